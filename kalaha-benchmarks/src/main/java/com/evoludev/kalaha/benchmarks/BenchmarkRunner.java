@@ -0,0 +1,27 @@
+package com.evoludev.kalaha.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with allocation profiling (gc.alloc.rate.norm reports bytes allocated per operation)
+ * and writes results as JSON, so runs can be compared by tools.
+ * <p>
+ * Usage: <i>java -jar target/benchmarks.jar [benchmark regex] [result file]</i>
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(args.length > 1 ? args[1] : "jmh-result.json")
+				.build();
+		new Runner(options).run();
+	}
+}
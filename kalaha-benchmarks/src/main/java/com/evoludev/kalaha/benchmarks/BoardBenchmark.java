@@ -0,0 +1,140 @@
+package com.evoludev.kalaha.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.evoludev.kalaha.game.Pit;
+import com.evoludev.kalaha.game.PositionKey;
+
+/**
+ * Single operations on the game core, cycling through a seeded corpus of positions
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+	@Param({ "6" })
+	private int houses;
+
+	@Param({ "6" })
+	private int seeds;
+
+	@Param({ "1" })
+	private long corpusSeed;
+
+	@Param({ "1024" })
+	private int corpusSize;
+
+	private KalahaRules rules;
+	private String[] states;
+	private KalahaBoard[] boards;
+	private KalahaGame[] games;
+	private PositionKey[] keys;
+	private KalahaBoard forkTarget;
+	private KalahaGame forkTargetGame;
+	private int[] moves;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		rules = KalahaRules.of(houses, seeds);
+		final SplittableRandom random = new SplittableRandom(corpusSeed);
+		states = PositionCorpus.generate(rules, corpusSize, corpusSeed);
+		boards = new KalahaBoard[corpusSize];
+		games = new KalahaGame[corpusSize];
+		keys = new PositionKey[corpusSize];
+		moves = new int[corpusSize];
+		for (int i = 0; i < corpusSize; i++) {
+			boards[i] = new KalahaBoard(rules).setBoardState(states[i]);
+			games[i] = KalahaGame.fromBoardState(rules, states[i], "A", "B");
+			keys[i] = PositionKey.of(boards[i]);
+			moves[i] = boards[i].getLegalMove(random.nextInt(boards[i].getLegalMovesCount()));
+		}
+		forkTarget = new KalahaBoard(rules);
+		forkTargetGame = KalahaGame.newGame(rules, "A", "B");
+	}
+
+	private int next() {
+		final int position = next;
+		next = position + 1 == corpusSize ? 0 : position + 1;
+		return position;
+	}
+
+	@Benchmark
+	public long makeUnmakeMove() {
+		final int position = next();
+		final KalahaBoard board = boards[position];
+		final long undo = board.makeMove(moves[position]);
+		board.unmakeMove(undo);
+		return undo;
+	}
+
+	@Benchmark
+	public String getBoardState() {
+		return boards[next()].getBoardState();
+	}
+
+	@Benchmark
+	public KalahaGame fromBoardState() {
+		return KalahaGame.fromBoardState(rules, states[next()], "A", "B");
+	}
+
+	@Benchmark
+	public KalahaBoard copyBoard() {
+		return boards[next()].copy();
+	}
+
+	@Benchmark
+	public KalahaBoard forkBoardInto() {
+		return boards[next()].forkInto(forkTarget);
+	}
+
+	@Benchmark
+	public KalahaGame copyGame() {
+		return games[next()].copy();
+	}
+
+	@Benchmark
+	public KalahaGame forkGameInto() {
+		return games[next()].forkInto(forkTargetGame);
+	}
+
+	/**
+	 * Baseline of {@link #sowSeedsFromHouse()}, which has no undo and restores its position the same way
+	 */
+	@Benchmark
+	public KalahaBoard restorePosition() {
+		final int position = next();
+		final KalahaBoard board = games[position].getBoard();
+		keys[position].applyTo(board);
+		return board;
+	}
+
+	@Benchmark
+	public Pit sowSeedsFromHouse() {
+		final int position = next();
+		final KalahaGame game = games[position];
+		keys[position].applyTo(game.getBoard());
+		return game.getPlayerToMove().sowSeedsFromHouse(moves[position]);
+	}
+}
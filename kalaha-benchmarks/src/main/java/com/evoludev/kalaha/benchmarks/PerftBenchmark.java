@@ -0,0 +1,75 @@
+package com.evoludev.kalaha.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evoludev.kalaha.engine.Perft;
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+
+/**
+ * Perft from the initial position, the standard throughput figure of the rules engine.
+ * The <i>nodes</i> counter reports moves per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PerftBenchmark {
+
+	@Param({ "6" })
+	private int houses;
+
+	@Param({ "6" })
+	private int seeds;
+
+	@Param({ "6" })
+	private int depth;
+
+	@Param({ "1" })
+	private int threads;
+
+	private KalahaBoard board;
+	private Perft perft;
+
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@State(Scope.Thread)
+	public static class Nodes {
+		public long nodes;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		board = new KalahaBoard(KalahaRules.of(houses, seeds));
+		perft = new Perft();
+		perft.setThreads(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		perft.shutdown();
+	}
+
+	@Benchmark
+	public long perft(Nodes nodes) {
+		final long count = perft.run(board, depth).getNodes();
+		nodes.nodes += count;
+		return count;
+	}
+}
@@ -0,0 +1,81 @@
+package com.evoludev.kalaha.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.evoludev.kalaha.game.PositionKey;
+
+/**
+ * Complete random games from the initial position
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayoutBenchmark {
+
+	@Param({ "6" })
+	private int houses;
+
+	@Param({ "6" })
+	private int seeds;
+
+	@Param({ "1" })
+	private long randomSeed;
+
+	private KalahaBoard board;
+	private KalahaGame game;
+	private PositionKey initial;
+	private SplittableRandom random;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		final KalahaRules rules = KalahaRules.of(houses, seeds);
+		board = new KalahaBoard(rules);
+		game = KalahaGame.newGame(rules, "A", "B");
+		initial = PositionKey.of(board);
+		random = new SplittableRandom(randomSeed);
+	}
+
+	/**
+	 * Plays on {@link KalahaBoard}, the way engines do
+	 */
+	@Benchmark
+	public int boardPlayout() {
+		initial.applyTo(board);
+		while (!board.isGameFinished()) {
+			board.makeMove(board.getLegalMove(random.nextInt(board.getLegalMovesCount())));
+		}
+		return board.getWinningPlayer();
+	}
+
+	/**
+	 * Plays through {@link KalahaGame}, the way the GUI does
+	 */
+	@Benchmark
+	public int gamePlayout() {
+		initial.applyTo(game.getBoard());
+		while (!game.isGameFinished()) {
+			game.makeMove(game.getBoard().getLegalMove(random.nextInt(game.getBoard().getLegalMovesCount())));
+		}
+		return game.getBoard().getWinningPlayer();
+	}
+}
@@ -0,0 +1,34 @@
+package com.evoludev.kalaha.benchmarks;
+
+import java.util.SplittableRandom;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+
+/**
+ * Reproducible sets of unfinished positions, sampled from random games
+ */
+public final class PositionCorpus {
+
+	private PositionCorpus() {
+	}
+
+	/**
+	 * @return board states of given number of positions, the same for the same seed
+	 */
+	public static String[] generate(KalahaRules rules, int size, long seed) {
+		final SplittableRandom random = new SplittableRandom(seed);
+		final KalahaBoard initial = new KalahaBoard(rules);
+		final String[] states = new String[size];
+		for (int position = 0; position < size; ) {
+			final KalahaBoard board = initial.copy();
+			for (int ply = random.nextInt(40); ply > 0 && !board.isGameFinished(); ply--) {
+				board.makeMove(board.getLegalMove(random.nextInt(board.getLegalMovesCount())));
+			}
+			if (!board.isGameFinished()) {
+				states[position++] = board.getBoardState();
+			}
+		}
+		return states;
+	}
+}
@@ -0,0 +1,98 @@
+package com.evoludev.kalaha.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.evoludev.kalaha.engine.AlphaBetaSearch;
+import com.evoludev.kalaha.engine.SearchLimits;
+import com.evoludev.kalaha.engine.SearchResult;
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+
+/**
+ * Alpha-beta search of the initial position for a fixed move time, each from an empty transposition table.
+ * The <i>depth</i> counter reports average depth reached, comparing thread counts shows how parallel search scales.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+	@Param({ "6" })
+	private int houses;
+
+	@Param({ "6" })
+	private int seeds;
+
+	@Param({ "200" })
+	private long moveTimeMillis;
+
+	@Param({ "1", "2", "4" })
+	private int threads;
+
+	private KalahaBoard board;
+	private AlphaBetaSearch search;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Depth {
+
+		private long searches;
+		private long depthSum;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			searches = 0;
+			depthSum = 0;
+		}
+
+		public double depth() {
+			return searches == 0 ? 0 : (double) depthSum / searches;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		board = new KalahaBoard(KalahaRules.of(houses, seeds));
+		search = new AlphaBetaSearch();
+		search.setThreads(threads);
+	}
+
+	/**
+	 * Searches must not reuse results of earlier ones
+	 */
+	@Setup(Level.Invocation)
+	public void clearTable() {
+		search.getTable().clear();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		search.shutdown();
+	}
+
+	@Benchmark
+	public int search(Depth depth) {
+		final SearchResult result = search.search(board, SearchLimits.time(moveTimeMillis));
+		depth.searches++;
+		depth.depthSum += result.getDepth();
+		return result.getBestMove();
+	}
+}
@@ -0,0 +1,263 @@
+package com.evoludev.kalaha;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import com.evoludev.kalaha.engine.AlphaBetaSearch;
+import com.evoludev.kalaha.engine.MctsPlayer;
+import com.evoludev.kalaha.engine.OpeningBook;
+import com.evoludev.kalaha.engine.Perft;
+import com.evoludev.kalaha.engine.SearchLimits;
+import com.evoludev.kalaha.engine.SearchResult;
+import com.evoludev.kalaha.engine.TranspositionTable;
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+
+/**
+ * Headless engine speaking a line based protocol over stdin/stdout, in the spirit of UCI.
+ * Every command is answered before the next one is read, searches run to their limits.
+ * <ul>
+ * <li><i>kalaha</i> - answers <i>id name Kalaha</i> and <i>kalahaok</i></li>
+ * <li><i>isready</i> - answers <i>readyok</i></li>
+ * <li><i>setoption threads|hash|engine|book &lt;value&gt;</i> - search threads, transposition table MB,
+ * <i>alphabeta</i> or <i>mcts</i>, {@link OpeningBook} file or <i>none</i></li>
+ * <li><i>newgame</i> - clears search state</li>
+ * <li><i>position [rules &lt;houses&gt; &lt;seeds&gt;] startpos|state &lt;board state&gt; [moves &lt;house&gt;...]</i>
+ * - sets up the position, board state as in {@link KalahaBoard#getBoardState()}</li>
+ * <li><i>go [depth N] [nodes N] [movetime ms]</i> - searches, answers <i>info ...</i> and <i>bestmove &lt;house&gt;</i>;
+ * book positions are answered with <i>info book ...</i> without search</li>
+ * <li><i>perft &lt;depth&gt;</i> - counts move paths, see {@link Perft}</li>
+ * <li><i>d</i> - answers <i>state &lt;board state&gt;</i> and <i>legal &lt;houses&gt;</i></li>
+ * <li><i>quit</i></li>
+ * </ul>
+ * Malformed commands are answered with <i>error &lt;message&gt;</i>. No AWT or Swing class is loaded, and search
+ * structures are allocated on first use, so the process is ready as soon as the JVM is.
+ */
+public class KalahaEngine {
+
+	private final BufferedReader in;
+	private final PrintWriter out;
+	private KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT);
+	private int threads = 1;
+	private int hashMb = AlphaBetaSearch.DEFAULT_TABLE_SIZE_MB;
+	private boolean mcts;
+	private AlphaBetaSearch alphaBeta;
+	private MctsPlayer mctsPlayer;
+	private OpeningBook book;
+
+	public KalahaEngine(Reader in, Writer out) {
+		this.in = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+		this.out = new PrintWriter(out, false);
+	}
+
+	public static void main(String[] args) throws IOException {
+		new KalahaEngine(new InputStreamReader(System.in, StandardCharsets.UTF_8),
+				new OutputStreamWriter(System.out, StandardCharsets.UTF_8)).run();
+	}
+
+	/**
+	 * Reads commands until <i>quit</i> or end of input
+	 */
+	public void run() throws IOException {
+		try {
+			for (String line = in.readLine(); line != null; line = in.readLine()) {
+				final String[] words = line.trim().split("\\s+");
+				if ("quit".equals(words[0])) {
+					break;
+				}
+				try {
+					execute(words);
+				} catch (RuntimeException e) {
+					out.println("error " + e.getMessage());
+				}
+				out.flush();
+			}
+		} finally {
+			out.flush();
+			shutdown();
+		}
+	}
+
+	private void execute(String[] words) {
+		switch (words[0]) {
+		case "":
+			break;
+		case "kalaha":
+			out.println("id name Kalaha");
+			out.println("kalahaok");
+			break;
+		case "isready":
+			out.println("readyok");
+			break;
+		case "setoption":
+			setOption(words);
+			break;
+		case "newgame":
+			if (alphaBeta != null) {
+				alphaBeta.getTable().clear();
+			}
+			break;
+		case "position":
+			position(words);
+			break;
+		case "go":
+			go(words);
+			break;
+		case "perft":
+			final Perft perft = new Perft();
+			perft.setThreads(threads);
+			try {
+				out.println(perft.run(board, Integer.parseInt(argument(words, 1))));
+			} finally {
+				perft.shutdown();
+			}
+			break;
+		case "d":
+			out.println("state " + board.getBoardState());
+			final StringBuilder legal = new StringBuilder("legal");
+			for (int moves = board.getLegalMoves(); moves != 0; moves &= moves - 1) {
+				legal.append(' ').append(Integer.numberOfTrailingZeros(moves));
+			}
+			out.println(legal);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown command: " + words[0]);
+		}
+	}
+
+	private void setOption(String[] words) {
+		final String value = argument(words, 2);
+		switch (words[1]) {
+		case "threads":
+			threads = Integer.parseInt(value);
+			if (alphaBeta != null) {
+				alphaBeta.setThreads(threads);
+			}
+			if (mctsPlayer != null) {
+				mctsPlayer.setThreads(threads);
+			}
+			break;
+		case "hash":
+			hashMb = Integer.parseInt(value);
+			if (alphaBeta != null) {
+				alphaBeta.shutdown();
+				alphaBeta = null;
+			}
+			break;
+		case "engine":
+			if (!"alphabeta".equals(value) && !"mcts".equals(value)) {
+				throw new IllegalArgumentException("Unknown engine: " + value + ". Valid engines are: [alphabeta, mcts]");
+			}
+			mcts = "mcts".equals(value);
+			break;
+		case "book":
+			try {
+				book = "none".equals(value) ? null : OpeningBook.open(Paths.get(value));
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Cannot open opening book " + value + ": " + e.getMessage());
+			}
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown option: " + words[1]);
+		}
+	}
+
+	private void position(String[] words) {
+		int word = 1;
+		KalahaRules rules = board.getRules();
+		if ("rules".equals(argument(words, word))) {
+			rules = KalahaRules.of(Integer.parseInt(argument(words, word + 1)), Integer.parseInt(argument(words, word + 2)));
+			word += 3;
+		}
+		final KalahaBoard position = new KalahaBoard(rules);
+		if ("state".equals(argument(words, word))) {
+			position.setBoardState(argument(words, word + 1));
+			word += 2;
+		} else if ("startpos".equals(words[word])) {
+			word++;
+		} else {
+			throw new IllegalArgumentException("Expected startpos or state, got: " + words[word]);
+		}
+		if (word < words.length) {
+			if (!"moves".equals(words[word])) {
+				throw new IllegalArgumentException("Expected moves, got: " + words[word]);
+			}
+			for (word++; word < words.length; word++) {
+				position.makeMove(Integer.parseInt(words[word]));
+			}
+		}
+		board = position;
+	}
+
+	private void go(String[] words) {
+		int maxDepth = SearchLimits.MAX_DEPTH;
+		long maxNodes = Long.MAX_VALUE;
+		long maxTimeMillis = Long.MAX_VALUE;
+		for (int word = 1; word < words.length; word += 2) {
+			final String value = argument(words, word + 1);
+			switch (words[word]) {
+			case "depth":
+				maxDepth = Integer.parseInt(value);
+				break;
+			case "nodes":
+				maxNodes = Long.parseLong(value);
+				break;
+			case "movetime":
+				maxTimeMillis = Long.parseLong(value);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown search limit: " + words[word]);
+			}
+		}
+		if (mcts && maxNodes == Long.MAX_VALUE && maxTimeMillis == Long.MAX_VALUE) {
+			throw new IllegalArgumentException("MCTS search needs nodes or movetime limit");
+		}
+		final int bookMove = book == null ? -1 : book.getBestMove(board);
+		if (bookMove >= 0) {
+			out.println("info book depth " + book.getDepth() + " score " + book.getScore(board, bookMove));
+			out.println("bestmove " + bookMove);
+			return;
+		}
+		final SearchLimits limits = new SearchLimits(maxDepth, maxNodes, maxTimeMillis);
+		final SearchResult result;
+		if (mcts) {
+			if (mctsPlayer == null) {
+				mctsPlayer = new MctsPlayer();
+				mctsPlayer.setThreads(threads);
+			}
+			result = mctsPlayer.search(board, limits);
+		} else {
+			if (alphaBeta == null) {
+				alphaBeta = new AlphaBetaSearch(new TranspositionTable(hashMb));
+				alphaBeta.setThreads(threads);
+			}
+			result = alphaBeta.search(board, limits);
+		}
+		out.println("info depth " + result.getDepth() + " score " + result.getScore() + " nodes " + result.getNodes()
+				+ " time " + result.getElapsedNanos() / 1000000 + " nps " + result.getNodesPerSecond());
+		out.println("bestmove " + result.getBestMove());
+	}
+
+	private static String argument(String[] words, int index) {
+		if (index >= words.length) {
+			throw new IllegalArgumentException("Missing argument of " + words[0]);
+		}
+		return words[index];
+	}
+
+	private void shutdown() {
+		if (alphaBeta != null) {
+			alphaBeta.shutdown();
+		}
+		if (mctsPlayer != null) {
+			mctsPlayer.shutdown();
+		}
+	}
+}
@@ -1,15 +1,24 @@
 package com.evoludev.kalaha;
 
+import java.io.IOException;
+
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
 import com.evoludev.kalaha.gui.KalahaFrame;
 
+/**
+ * Opens the game window, or with <i>engine</i> argument runs headless {@link KalahaEngine} on stdin/stdout
+ */
 public class KalahaEntry {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws IOException {
 		
+		if (args.length > 0 && "engine".equals(args[0])) {
+			KalahaEngine.main(args);
+			return;
+		}
 		try {
 			UIManager.setLookAndFeel("javax.swing.plaf.metal.MetalLookAndFeel");
 		} catch (Exception ex) {
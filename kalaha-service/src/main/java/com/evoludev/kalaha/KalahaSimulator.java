@@ -0,0 +1,326 @@
+package com.evoludev.kalaha;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.evoludev.kalaha.archive.GameRecord;
+import com.evoludev.kalaha.archive.GameRecordWriter;
+import com.evoludev.kalaha.engine.MovePolicies;
+import com.evoludev.kalaha.engine.MovePolicy;
+import com.evoludev.kalaha.game.GamePosition;
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Headless self-play between two move policies. Games are spread over a thread pool, every thread reusing
+ * its own board and policy instances. Policies swap seats every game, so the first policy moves first
+ * in even games.
+ * <p>
+ * Usage: <i>KalahaSimulator [-threads N] [-houses N] [-seeds N] [-opening N] [-seed N] [-out file] [-archive file]
+ * &lt;games&gt; &lt;policy 1&gt; &lt;policy 2&gt;</i>, see {@link MovePolicies#parse(String, long)} for policies.
+ * <i>-out</i> writes game results as CSV, <i>-archive</i> writes games as {@link GameRecordWriter} archive.
+ */
+public class KalahaSimulator {
+
+	/**
+	 * Receives every finished game, called concurrently from simulation threads
+	 */
+	public interface GameListener {
+
+		/**
+		 * @param game game number
+		 * @param firstPolicySeat player index of the first policy
+		 * @param board finished position, only valid during the call
+		 * @param moves number of moves played including opening moves
+		 * @param moveList house numbers played, first <i>moves</i> entries, only valid during the call
+		 */
+		void gameFinished(long game, int firstPolicySeat, KalahaBoard board, int moves, byte[] moveList);
+	}
+
+	private final KalahaRules rules;
+	private final Supplier<MovePolicy> firstPolicy;
+	private final Supplier<MovePolicy> secondPolicy;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int openingPlies = 2;
+	private long seed = System.nanoTime();
+
+	public KalahaSimulator(KalahaRules rules, Supplier<MovePolicy> firstPolicy, Supplier<MovePolicy> secondPolicy) {
+		this.rules = rules;
+		this.firstPolicy = firstPolicy;
+		this.secondPolicy = secondPolicy;
+	}
+
+	public static void main(String[] args) throws IOException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int houses = KalahaRules.DEFAULT.getHousesPerPlayer();
+		int seeds = KalahaRules.DEFAULT.getInitialSeeds();
+		int opening = 2;
+		long seed = System.nanoTime();
+		String out = null;
+		String archive = null;
+		int arg = 0;
+		for (; arg + 1 < args.length && args[arg].startsWith("-"); arg += 2) {
+			switch (args[arg]) {
+			case "-threads":
+				threads = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-houses":
+				houses = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-seeds":
+				seeds = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-opening":
+				opening = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-seed":
+				seed = Long.parseLong(args[arg + 1]);
+				break;
+			case "-out":
+				out = args[arg + 1];
+				break;
+			case "-archive":
+				archive = args[arg + 1];
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + args[arg]);
+			}
+		}
+		if (args.length - arg != 3) {
+			System.err.println("Usage: KalahaSimulator [-threads N] [-houses N] [-seeds N] [-opening N] [-seed N] [-out file]"
+					+ " [-archive file] <games> <policy 1> <policy 2>");
+			System.err.println("Policies: random, greedy, alphabeta:<depth>, mcts:<playouts>");
+			System.exit(1);
+		}
+		KalahaSimulator simulator = new KalahaSimulator(KalahaRules.of(houses, seeds),
+				MovePolicies.parse(args[arg + 1], seed), MovePolicies.parse(args[arg + 2], ~seed));
+		simulator.setThreads(threads);
+		simulator.setOpeningPlies(opening);
+		simulator.setSeed(seed);
+		long games = Long.parseLong(args[arg]);
+		Writer writer = out == null ? null : Files.newBufferedWriter(Paths.get(out), StandardCharsets.UTF_8);
+		GameRecordWriter archiveWriter = archive == null ? null : GameRecordWriter.create(Paths.get(archive));
+		GamePosition initial = GamePosition.initial(simulator.rules);
+		GameListener listener = writer == null && archiveWriter == null ? null : (game, firstPolicySeat, board, moves, moveList) -> {
+			try {
+				if (writer != null) {
+					String line = game + "," + firstPolicySeat + "," + board.getSeeds(board.getStorePit(0)) + ","
+							+ board.getSeeds(board.getStorePit(1)) + "," + board.getWinningPlayer() + "," + moves + "\n";
+					synchronized (writer) {
+						writer.write(line);
+					}
+				}
+				if (archiveWriter != null) {
+					int checksum = GameRecord.checksum(board);
+					synchronized (archiveWriter) {
+						archiveWriter.write(initial, true, moveList, moves, checksum);
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+		try {
+			if (writer != null) {
+				writer.write("game,firstPolicySeat,store1,store2,winner,moves\n");
+			}
+			System.out.println(simulator.run(games, listener));
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+			if (archiveWriter != null) {
+				archiveWriter.close();
+			}
+		}
+	}
+
+	public void setThreads(int threads) {
+		Preconditions.checkArgument(threads > 0, "At least one simulation thread is required, got: " + threads);
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets number of random moves opening every game, so that deterministic policies do not replay one game
+	 */
+	public void setOpeningPlies(int openingPlies) {
+		Preconditions.checkArgument(openingPlies >= 0, "Opening plies must not be negative, got: " + openingPlies);
+		this.openingPlies = openingPlies;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Plays given number of games
+	 * @param listener notified of every finished game, may be null
+	 */
+	public Stats run(long games, GameListener listener) {
+		final long start = System.nanoTime();
+		final AtomicLong nextGame = new AtomicLong();
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kalaha-simulator-%d").build());
+		try {
+			List<Future<Stats>> futures = new ArrayList<>();
+			for (int id = 0; id < threads; id++) {
+				final long workerSeed = seed + id;
+				futures.add(executor.submit(() -> play(games, nextGame, listener, new SplittableRandom(workerSeed))));
+			}
+			Stats total = new Stats();
+			for (Future<Stats> future : futures) {
+				try {
+					total.add(Uninterruptibles.getUninterruptibly(future));
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Simulation failed", e.getCause());
+				}
+			}
+			total.elapsedNanos = System.nanoTime() - start;
+			return total;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Stats play(long games, AtomicLong nextGame, GameListener listener, SplittableRandom random) {
+		final Stats stats = new Stats();
+		final MovePolicy[] policies = { firstPolicy.get(), secondPolicy.get() };
+		final KalahaBoard initial = new KalahaBoard(rules);
+		final KalahaBoard board = initial.copy();
+		byte[] moveList = new byte[256];
+		for (long game = nextGame.getAndIncrement(); game < games; game = nextGame.getAndIncrement()) {
+			initial.forkInto(board);
+			final int firstPolicySeat = (int) (game & 1);
+			int moves = 0;
+			for (; !board.isGameFinished(); moves++) {
+				final int player = board.getPlayerToMove();
+				final int move;
+				if (moves < openingPlies) {
+					move = board.getLegalMove(random.nextInt(board.getLegalMovesCount()));
+				} else {
+					move = policies[player ^ firstPolicySeat].chooseMove(board);
+					Preconditions.checkState(board.isLegalMove(player, move), "Policy chose illegal house " + move
+							+ " for player " + player + " in " + board.getBoardState());
+				}
+				if (moves == moveList.length) {
+					moveList = Arrays.copyOf(moveList, moves * 2);
+				}
+				moveList[moves] = (byte) move;
+				board.makeMove(move);
+			}
+			stats.record(board.getWinningPlayer(), firstPolicySeat, moves);
+			if (listener != null) {
+				listener.gameFinished(game, firstPolicySeat, board, moves, moveList);
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * Aggregated outcome of a simulation
+	 */
+	public static final class Stats {
+
+		private long games;
+		private long moves;
+		private long draws;
+		private final long[] winsBySeat = new long[2];
+		private final long[] winsByPolicy = new long[2];
+		private long elapsedNanos;
+
+		void record(int winner, int firstPolicySeat, int gameMoves) {
+			games++;
+			moves += gameMoves;
+			if (winner < 0) {
+				draws++;
+			} else {
+				winsBySeat[winner]++;
+				winsByPolicy[winner ^ firstPolicySeat]++;
+			}
+		}
+
+		void add(Stats other) {
+			games += other.games;
+			moves += other.moves;
+			draws += other.draws;
+			for (int i = 0; i < 2; i++) {
+				winsBySeat[i] += other.winsBySeat[i];
+				winsByPolicy[i] += other.winsByPolicy[i];
+			}
+		}
+
+		public long getGames() {
+			return games;
+		}
+
+		public long getMoves() {
+			return moves;
+		}
+
+		public long getDraws() {
+			return draws;
+		}
+
+		/**
+		 * @param seat player index, 0 moves first
+		 */
+		public long getWinsBySeat(int seat) {
+			return winsBySeat[seat];
+		}
+
+		/**
+		 * @param policy 0 for the first policy, 1 for the second
+		 */
+		public long getWinsByPolicy(int policy) {
+			return winsByPolicy[policy];
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public double getGamesPerSecond() {
+			return perSecond(games);
+		}
+
+		public double getMovesPerSecond() {
+			return perSecond(moves);
+		}
+
+		private double perSecond(long count) {
+			return elapsedNanos == 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+		}
+
+		private String rate(long count) {
+			return String.format(Locale.ROOT, "%d (%.1f%%)", count, games == 0 ? 0 : 100.0 * count / games);
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "games=%d moves=%d time=%dms games/s=%.0f moves/s=%.0f%n", games, moves,
+					TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getGamesPerSecond(), getMovesPerSecond())
+					+ "policy 1 wins=" + rate(winsByPolicy[0]) + " policy 2 wins=" + rate(winsByPolicy[1])
+					+ " draws=" + rate(draws) + System.lineSeparator()
+					+ "first player wins=" + rate(winsBySeat[0]) + " second player wins=" + rate(winsBySeat[1]);
+		}
+	}
+}
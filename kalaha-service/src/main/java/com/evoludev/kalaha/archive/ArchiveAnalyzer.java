@@ -0,0 +1,152 @@
+package com.evoludev.kalaha.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.google.common.base.Preconditions;
+
+/**
+ * Replays game archives in parallel and collects {@link ArchiveStats}. Archives are split at block boundaries
+ * into ranges read by fork-join tasks, each with its own reader, board and statistics, merged on join.
+ * Memory use depends on the number of threads only, not on archive size.
+ * <p>
+ * Usage: <i>ArchiveAnalyzer [-threads N] [-verify] &lt;archive&gt;...</i>
+ */
+public class ArchiveAnalyzer {
+
+	/** Ranges of at most that many blocks are read by one task */
+	private static final int BLOCKS_PER_TASK = 4;
+
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private boolean verify;
+
+	public static void main(String[] args) throws IOException {
+		ArchiveAnalyzer analyzer = new ArchiveAnalyzer();
+		int arg = 0;
+		for (; arg < args.length && args[arg].startsWith("-"); arg++) {
+			switch (args[arg]) {
+			case "-threads":
+				analyzer.setThreads(Integer.parseInt(args[++arg]));
+				break;
+			case "-verify":
+				analyzer.setVerify(true);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + args[arg]);
+			}
+		}
+		if (arg == args.length) {
+			System.err.println("Usage: ArchiveAnalyzer [-threads N] [-verify] <archive>...");
+			System.exit(1);
+		}
+		List<Path> files = new ArrayList<>();
+		for (; arg < args.length; arg++) {
+			files.add(Paths.get(args[arg]));
+		}
+		final long start = System.nanoTime();
+		ArchiveStats stats = analyzer.analyze(files);
+		System.out.println(stats);
+		System.out.println("games=" + stats.getGames() + " time=" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+	}
+
+	public void setThreads(int threads) {
+		Preconditions.checkArgument(threads > 0, "At least one analysis thread is required, got: %s", threads);
+		this.threads = threads;
+	}
+
+	/**
+	 * Turns checking every replay against the recorded final position on or off
+	 */
+	public void setVerify(boolean verify) {
+		this.verify = verify;
+	}
+
+	public ArchiveStats analyze(Path file) throws IOException {
+		final List<Path> files = new ArrayList<>();
+		files.add(file);
+		return analyze(files);
+	}
+
+	/**
+	 * Replays all games of given archives
+	 * @throws {@link IllegalStateException} - in case an archive is corrupt or, verifying, a game does not replay
+	 */
+	public ArchiveStats analyze(List<Path> files) throws IOException {
+		final List<BlockRange> tasks = new ArrayList<>();
+		for (Path file : files) {
+			final long[] offsets = GameRecordReader.listBlocks(file);
+			if (offsets.length > 1) {
+				tasks.add(new BlockRange(file, offsets, 0, offsets.length - 1));
+			}
+		}
+		final ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			final ArchiveStats total = new ArchiveStats();
+			for (BlockRange task : tasks) {
+				pool.execute(task);
+			}
+			for (BlockRange task : tasks) {
+				total.merge(task.join());
+			}
+			return total;
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Blocks <i>from</i> (inclusive) to <i>to</i> (exclusive) of one archive, split in halves while big
+	 */
+	private class BlockRange extends RecursiveTask<ArchiveStats> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path file;
+		private final long[] offsets;
+		private final int from;
+		private final int to;
+
+		BlockRange(Path file, long[] offsets, int from, int to) {
+			this.file = file;
+			this.offsets = offsets;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected ArchiveStats compute() {
+			if (to - from > BLOCKS_PER_TASK) {
+				final int middle = (from + to) >>> 1;
+				final BlockRange second = new BlockRange(file, offsets, middle, to);
+				second.fork();
+				final ArchiveStats stats = new BlockRange(file, offsets, from, middle).compute();
+				return stats.merge(second.join());
+			}
+			final ArchiveStats stats = new ArchiveStats();
+			try (GameRecordReader reader = GameRecordReader.open(file, offsets[from], offsets[to])) {
+				reader.setVerify(verify);
+				KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT);
+				for (GameRecord record = reader.read(); record != null; record = reader.read()) {
+					if (!board.getRules().equals(record.getStart().getRules())) {
+						board = new KalahaBoard(record.getStart().getRules());
+					}
+					stats.add(record, board);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return stats;
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package com.evoludev.kalaha.archive;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+
+/**
+ * Statistics of replayed games, per rules variant. Counters are primitive arrays filled by one thread;
+ * statistics of separate parts of an archive are combined by {@link #merge(ArchiveStats)}.
+ */
+public final class ArchiveStats {
+
+	/** Longer extra turn chains are counted together */
+	public static final int MAX_CHAIN = 16;
+
+	private final Map<KalahaRules, VariantStats> variants = new LinkedHashMap<>();
+	/* Variant of the previous game, archives rarely mix variants */
+	private VariantStats last;
+
+	/**
+	 * Replays given game on given board and counts it
+	 * @param board scratch board of any rules, reset to the start of the game
+	 */
+	public void add(GameRecord record, KalahaBoard board) {
+		final KalahaRules rules = record.getStart().getRules();
+		if (last == null || !last.rules.equals(rules)) {
+			last = variants.computeIfAbsent(rules, VariantStats::new);
+		}
+		last.add(record, board);
+	}
+
+	/**
+	 * Adds counters of given statistics to these
+	 * @return <i>this</i>
+	 */
+	public ArchiveStats merge(ArchiveStats other) {
+		for (VariantStats stats : other.variants.values()) {
+			variants.computeIfAbsent(stats.rules, VariantStats::new).merge(stats);
+		}
+		return this;
+	}
+
+	public Collection<VariantStats> getVariants() {
+		return variants.values();
+	}
+
+	/**
+	 * @return statistics of given variant, null if no game of it was counted
+	 */
+	public VariantStats getVariant(KalahaRules rules) {
+		return variants.get(rules);
+	}
+
+	public long getGames() {
+		long games = 0;
+		for (VariantStats stats : variants.values()) {
+			games += stats.games;
+		}
+		return games;
+	}
+
+	@Override
+	public String toString() {
+		List<String> lines = new ArrayList<>();
+		for (VariantStats stats : variants.values()) {
+			lines.add(stats.toString());
+		}
+		return String.join("\n", lines);
+	}
+
+	/**
+	 * Counters of one rules variant
+	 */
+	public static final class VariantStats {
+
+		private static final int DRAW = 2;
+
+		private final KalahaRules rules;
+		private final int housesPerPlayer;
+		private long games;
+		private long moves;
+		private final long[] results = new long[3];
+		/** Results by first house played, 3 entries per house: first player wins, second player wins, draw */
+		private final long[] resultsByFirstMove;
+		/** Captures by the capturing house, i.e. the own empty house the last seed lands in */
+		private final long[] capturesByHouse;
+		private long captures;
+		private long extraTurns;
+		/** Runs of consecutive extra turns of one player, by length */
+		private final long[] extraTurnChains = new long[MAX_CHAIN + 1];
+
+		VariantStats(KalahaRules rules) {
+			this.rules = rules;
+			this.housesPerPlayer = rules.getHousesPerPlayer();
+			this.resultsByFirstMove = new long[housesPerPlayer * 3];
+			this.capturesByHouse = new long[housesPerPlayer];
+		}
+
+		void add(GameRecord record, KalahaBoard board) {
+			record.getStart().applyTo(board);
+			int chain = 0;
+			for (int ply = 0; ply < record.getMoveCount(); ply++) {
+				final int player = board.getPlayerToMove();
+				final int house = record.getMove(ply);
+				final int lastPit = board.getLastPit(player, house);
+				final long undo = board.makeMove(house);
+				if (KalahaBoard.isCapture(undo)) {
+					captures++;
+					capturesByHouse[lastPit - board.getHousePit(player, 0)]++;
+				}
+				if (!KalahaBoard.isGameEnd(undo) && board.getPlayerToMove() == player) {
+					extraTurns++;
+					chain++;
+				} else if (chain > 0) {
+					extraTurnChains[Math.min(chain, MAX_CHAIN)]++;
+					chain = 0;
+				}
+			}
+			if (chain > 0) {
+				// Record of an unfinished game ending with an extra turn
+				extraTurnChains[Math.min(chain, MAX_CHAIN)]++;
+			}
+			final int winner = board.getWinningPlayer();
+			final int result = winner < 0 ? DRAW : winner;
+			games++;
+			moves += record.getMoveCount();
+			results[result]++;
+			if (record.getMoveCount() > 0 && record.isInitialStart()) {
+				resultsByFirstMove[record.getMove(0) * 3 + result]++;
+			}
+		}
+
+		void merge(VariantStats other) {
+			games += other.games;
+			moves += other.moves;
+			captures += other.captures;
+			extraTurns += other.extraTurns;
+			add(results, other.results);
+			add(resultsByFirstMove, other.resultsByFirstMove);
+			add(capturesByHouse, other.capturesByHouse);
+			add(extraTurnChains, other.extraTurnChains);
+		}
+
+		private static void add(long[] to, long[] from) {
+			for (int idx = 0; idx < to.length; idx++) {
+				to[idx] += from[idx];
+			}
+		}
+
+		public KalahaRules getRules() {
+			return rules;
+		}
+
+		public long getGames() {
+			return games;
+		}
+
+		public long getMoves() {
+			return moves;
+		}
+
+		public double getAverageMoves() {
+			return games == 0 ? 0 : (double) moves / games;
+		}
+
+		/**
+		 * @param player player index, 0 moves first
+		 */
+		public long getWins(int player) {
+			return results[player];
+		}
+
+		public long getDraws() {
+			return results[DRAW];
+		}
+
+		/**
+		 * @return score of the first player in percent (win 100, draw 50), 50 means no first player advantage
+		 */
+		public double getFirstPlayerScore() {
+			return games == 0 ? 50 : (results[0] + results[DRAW] / 2.0) * 100 / games;
+		}
+
+		/**
+		 * @return games from the initial position opened from given house
+		 */
+		public long getGamesByFirstMove(int houseNum) {
+			return resultsByFirstMove[houseNum * 3] + resultsByFirstMove[houseNum * 3 + 1] + resultsByFirstMove[houseNum * 3 + DRAW];
+		}
+
+		/**
+		 * @return wins of the first player in games opened from given house, in percent
+		 */
+		public double getFirstMoveWinRate(int houseNum) {
+			final long opened = getGamesByFirstMove(houseNum);
+			return opened == 0 ? 0 : resultsByFirstMove[houseNum * 3] * 100.0 / opened;
+		}
+
+		public long getCaptures() {
+			return captures;
+		}
+
+		/**
+		 * @return captures made by landing in given own house
+		 */
+		public long getCaptures(int houseNum) {
+			return capturesByHouse[houseNum];
+		}
+
+		public long getExtraTurns() {
+			return extraTurns;
+		}
+
+		/**
+		 * @return runs of exactly given number of consecutive extra turns, {@link #MAX_CHAIN} counts longer runs too
+		 */
+		public long getExtraTurnChains(int length) {
+			return extraTurnChains[length];
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder str = new StringBuilder();
+			str.append(String.format(Locale.ROOT, "%s games=%d avg moves=%.1f first player wins=%d second player wins=%d"
+					+ " draws=%d first player score=%.1f%%%n", rules, games, getAverageMoves(), results[0], results[1],
+					results[DRAW], getFirstPlayerScore()));
+			str.append("first move win rate:");
+			for (int house = 0; house < housesPerPlayer; house++) {
+				str.append(String.format(Locale.ROOT, " %d=%.1f%%", house, getFirstMoveWinRate(house)));
+			}
+			str.append(String.format(Locale.ROOT, "%ncaptures=%d per game=%.2f by house:", captures,
+					games == 0 ? 0 : (double) captures / games));
+			for (int house = 0; house < housesPerPlayer; house++) {
+				str.append(' ').append(house).append('=').append(capturesByHouse[house]);
+			}
+			str.append(String.format(Locale.ROOT, "%nextra turns=%d chains:", extraTurns));
+			for (int length = 1; length <= MAX_CHAIN; length++) {
+				if (extraTurnChains[length] > 0) {
+					str.append(' ').append(length).append(length == MAX_CHAIN ? "+=" : "=").append(extraTurnChains[length]);
+				}
+			}
+			return str.toString();
+		}
+	}
+}
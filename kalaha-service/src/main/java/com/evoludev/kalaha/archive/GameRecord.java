@@ -0,0 +1,151 @@
+package com.evoludev.kalaha.archive;
+
+import java.util.Arrays;
+
+import com.evoludev.kalaha.game.GamePosition;
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaGame;
+import com.google.common.base.Preconditions;
+
+/**
+ * Immutable record of one game: starting position, house numbers played in order and a checksum
+ * of the final position, which replays are verified against.
+ * <p>
+ * See {@link GameRecordWriter} for the archive format.
+ */
+public final class GameRecord {
+
+	private final GamePosition start;
+	private final byte[] moves;
+	private final int finalChecksum;
+
+	/**
+	 * @param moves house numbers played from the start position, first <i>moveCount</i> entries are used
+	 * @param finalChecksum {@link #checksum(KalahaBoard)} of the position after all moves
+	 */
+	public GameRecord(GamePosition start, byte[] moves, int moveCount, int finalChecksum) {
+		this.start = start;
+		this.moves = Arrays.copyOf(moves, moveCount);
+		this.finalChecksum = finalChecksum;
+	}
+
+	/**
+	 * @return record of given moves played from given position, the checksum taken from a replay
+	 * @throws {@link IllegalArgumentException} - in case a move is illegal
+	 */
+	public static GameRecord of(GamePosition start, int... moves) {
+		final byte[] houses = new byte[moves.length];
+		final KalahaBoard board = start.toBoard();
+		for (int ply = 0; ply < moves.length; ply++) {
+			Preconditions.checkArgument(!board.isGameFinished(), "Game has finished after %s moves", ply);
+			board.makeMove(moves[ply]);
+			houses[ply] = (byte) moves[ply];
+		}
+		return new GameRecord(start, houses, houses.length, checksum(board));
+	}
+
+	/**
+	 * @return checksum of the board position, folded from its Zobrist hash
+	 */
+	public static int checksum(KalahaBoard board) {
+		final long hash = board.getHash();
+		return (int) (hash ^ hash >>> 32);
+	}
+
+	public GamePosition getStart() {
+		return start;
+	}
+
+	/**
+	 * @return true if the game starts from the initial position of its rules
+	 */
+	public boolean isInitialStart() {
+		if (start.getPlayerToMove() != 0) {
+			return false;
+		}
+		final int houses = start.getRules().getHousesPerPlayer();
+		for (int pit = 0; pit < start.getPitsCount(); pit++) {
+			final boolean store = pit % (houses + 1) == houses;
+			if (start.getSeeds(pit) != (store ? 0 : start.getRules().getInitialSeeds())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getMoveCount() {
+		return moves.length;
+	}
+
+	/**
+	 * @return house number played at given ply, starting from 0
+	 */
+	public int getMove(int ply) {
+		return moves[ply];
+	}
+
+	public int getFinalChecksum() {
+		return finalChecksum;
+	}
+
+	/**
+	 * Sets up given board with the start position and plays all moves on it
+	 * @return given board
+	 * @throws {@link IllegalArgumentException} - in case a move is illegal
+	 */
+	public KalahaBoard replay(KalahaBoard board) {
+		start.applyTo(board);
+		for (byte move : moves) {
+			board.makeMove(move);
+		}
+		return board;
+	}
+
+	/**
+	 * Replays the game on a new game through {@link KalahaGame#makeMove(int)}
+	 * @return game after all moves
+	 */
+	public KalahaGame replay(String player1, String player2) {
+		final KalahaGame game = KalahaGame.newGame(start.getRules(), player1, player2);
+		start.applyTo(game.getBoard());
+		game.publishPosition();
+		for (byte move : moves) {
+			game.makeMove(move);
+		}
+		return game;
+	}
+
+	/**
+	 * @return true if replaying on given board ends in the recorded final position
+	 */
+	public boolean verify(KalahaBoard board) {
+		try {
+			return checksum(replay(board)) == finalChecksum;
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof GameRecord)) {
+			return false;
+		}
+		GameRecord other = (GameRecord) obj;
+		return finalChecksum == other.finalChecksum && start.equals(other.start) && Arrays.equals(moves, other.moves);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * start.hashCode() + Arrays.hashCode(moves);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder(start.getBoardState()).append(" moves");
+		for (byte move : moves) {
+			str.append(' ').append(move);
+		}
+		return str.toString();
+	}
+}
@@ -0,0 +1,277 @@
+package com.evoludev.kalaha.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import com.evoludev.kalaha.game.GamePosition;
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.google.common.base.Preconditions;
+
+/**
+ * Streams {@link GameRecord}s from an archive written by {@link GameRecordWriter}, holding one block in memory.
+ * Blocks are checked against their CRC32; with {@link #setVerify(boolean)} every record is also replayed
+ * and checked against its final position checksum.
+ * <p>
+ * Blocks are independent, so an archive can be read in parallel: {@link #listBlocks(Path)} finds block
+ * offsets and {@link #open(Path, long, long)} reads a range of blocks.
+ */
+public final class GameRecordReader implements Closeable {
+
+	/** Bigger blocks are taken for corruption rather than allocated */
+	private static final int MAX_BLOCK_BYTES = 64 << 20;
+
+	private final ReadableByteChannel channel;
+	private final Inflater inflater = new Inflater();
+	private final CRC32 crc = new CRC32();
+	/* Channel reads go through the direct buffer, Inflater takes arrays only */
+	private ByteBuffer input = ByteBuffer.allocateDirect(GameRecordWriter.BLOCK_HEADER_BYTES + GameRecordWriter.DEFAULT_BLOCK_BYTES)
+			.order(ByteOrder.LITTLE_ENDIAN);
+	private byte[] compressed = new byte[0];
+	private byte[] raw = new byte[0];
+	private int rawLength;
+	private int position;
+	private int blockRecords;
+	private long recordsRead;
+	private boolean verify;
+	/** Bytes left to the end of the block range read */
+	private long remaining = Long.MAX_VALUE;
+	/* Last rules seen with their initial position and a board for custom starts and verification */
+	private KalahaRules rules;
+	private GamePosition initial;
+	private KalahaBoard board;
+	private byte[] moves = new byte[256];
+
+	public GameRecordReader(ReadableByteChannel channel) throws IOException {
+		this.channel = channel;
+		input.limit(GameRecordWriter.FILE_HEADER_BYTES);
+		Preconditions.checkState(readFully(input), "Archive is empty");
+		input.flip();
+		checkFileHeader(input);
+	}
+
+	private GameRecordReader(ReadableByteChannel channel, long remaining) {
+		this.channel = channel;
+		this.remaining = remaining;
+	}
+
+	public static GameRecordReader open(Path file) throws IOException {
+		return new GameRecordReader(FileChannel.open(file, StandardOpenOption.READ));
+	}
+
+	/**
+	 * Opens given file for reading blocks starting between given offsets
+	 * @param from offset of a block, as returned by {@link #listBlocks(Path)}
+	 * @param to offset of a later block or the file end
+	 */
+	public static GameRecordReader open(Path file, long from, long to) throws IOException {
+		Preconditions.checkArgument(from >= GameRecordWriter.FILE_HEADER_BYTES && from <= to, "Invalid block range %s - %s", from, to);
+		final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		channel.position(from);
+		return new GameRecordReader(channel, to - from);
+	}
+
+	/**
+	 * Walks block headers of given archive without reading the blocks
+	 * @return offsets of all blocks followed by the end offset of the last block
+	 */
+	public static long[] listBlocks(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final ByteBuffer header = ByteBuffer.allocateDirect(GameRecordWriter.BLOCK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			checkFileHeader(readAt(channel, header, 0, GameRecordWriter.FILE_HEADER_BYTES));
+			final long size = channel.size();
+			long[] offsets = new long[64];
+			int count = 0;
+			long offset = GameRecordWriter.FILE_HEADER_BYTES;
+			while (offset < size) {
+				readAt(channel, header, offset, GameRecordWriter.BLOCK_HEADER_BYTES);
+				Preconditions.checkState(header.getLong() == GameRecordWriter.BLOCK_SYNC, "Corrupt archive block header at offset %s", offset);
+				final int compressedLength = header.getInt(Long.BYTES + 2 * Integer.BYTES);
+				Preconditions.checkState(compressedLength > 0 && compressedLength <= MAX_BLOCK_BYTES,
+						"Corrupt archive block header at offset %s", offset);
+				if (count + 1 == offsets.length) {
+					offsets = Arrays.copyOf(offsets, offsets.length * 2);
+				}
+				offsets[count++] = offset;
+				offset += GameRecordWriter.BLOCK_HEADER_BYTES + compressedLength;
+			}
+			Preconditions.checkState(offset == size, "Archive truncated at offset %s", size);
+			offsets[count++] = offset;
+			return Arrays.copyOf(offsets, count);
+		}
+	}
+
+	private static void checkFileHeader(ByteBuffer header) {
+		final int magic = header.getInt();
+		final int version = header.getInt();
+		Preconditions.checkState(magic == GameRecordWriter.FILE_MAGIC, "Not a game archive, magic: %s", Integer.toHexString(magic));
+		Preconditions.checkState(version == GameRecordWriter.VERSION, "Unsupported archive version: %s", version);
+	}
+
+	/**
+	 * @return given buffer filled with given number of bytes from given offset, ready to get
+	 */
+	private static ByteBuffer readAt(FileChannel channel, ByteBuffer buffer, long offset, int length) throws IOException {
+		buffer.clear().limit(length);
+		while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+			// Positional reads until the buffer is full
+		}
+		Preconditions.checkState(!buffer.hasRemaining(), "Archive truncated at offset %s", offset);
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Turns replaying every record against its final position checksum on or off
+	 */
+	public void setVerify(boolean verify) {
+		this.verify = verify;
+	}
+
+	public long getRecordsRead() {
+		return recordsRead;
+	}
+
+	/**
+	 * @return next record, null at the end of the archive
+	 * @throws {@link IllegalStateException} - in case the archive is corrupt or a verified record does not replay
+	 */
+	public GameRecord read() throws IOException {
+		if (blockRecords == 0 && !readBlock()) {
+			return null;
+		}
+		final int houses = getVarint();
+		final int seeds = getVarint();
+		if (rules == null || rules.getHousesPerPlayer() != houses || rules.getInitialSeeds() != seeds) {
+			rules = KalahaRules.of(houses, seeds);
+			initial = GamePosition.initial(rules);
+			board = new KalahaBoard(rules);
+		}
+		GamePosition start = initial;
+		Preconditions.checkState(position < rawLength, "Corrupt archive record %s", recordsRead);
+		if ((raw[position++] & GameRecordWriter.FLAG_CUSTOM_START) != 0) {
+			board.setPlayerToMove(getVarint());
+			for (int pit = 0; pit < board.getPitsCount(); pit++) {
+				board.setSeeds(pit, getVarint());
+			}
+			start = GamePosition.of(board);
+		}
+		final int moveCount = getVarint();
+		final int moveBits = GameRecordWriter.getMoveBits(rules);
+		// Checked before allocating, a corrupt count must not overrun the block or exhaust the heap
+		Preconditions.checkState(moveCount >= 0 && ((long) moveCount * moveBits + 7) / 8 + Integer.BYTES <= rawLength - position,
+				"Corrupt archive block, record %s overruns it", recordsRead);
+		if (moves.length < moveCount) {
+			moves = new byte[Math.max(moveCount, moves.length * 2)];
+		}
+		final int moveMask = (1 << moveBits) - 1;
+		long bits = 0;
+		int bitCount = 0;
+		for (int ply = 0; ply < moveCount; ply++) {
+			if (bitCount < moveBits) {
+				bits |= (long) (raw[position++] & 0xFF) << bitCount;
+				bitCount += Byte.SIZE;
+			}
+			moves[ply] = (byte) (bits & moveMask);
+			bits >>>= moveBits;
+			bitCount -= moveBits;
+		}
+		int checksum = 0;
+		for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+			checksum |= (raw[position++] & 0xFF) << shift;
+		}
+		blockRecords--;
+		recordsRead++;
+
+		final GameRecord record = new GameRecord(start, moves, moveCount, checksum);
+		Preconditions.checkState(!verify || record.verify(board), "Record %s does not replay to its final position: %s",
+				recordsRead - 1, record);
+		return record;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inflater.end();
+		channel.close();
+	}
+
+	private boolean readBlock() throws IOException {
+		input.clear().limit(GameRecordWriter.BLOCK_HEADER_BYTES);
+		if (remaining <= 0 || !readFully(input)) {
+			return false;
+		}
+		input.flip();
+		final long sync = input.getLong();
+		blockRecords = input.getInt();
+		rawLength = input.getInt();
+		final int compressedLength = input.getInt();
+		final int blockCrc = input.getInt();
+		Preconditions.checkState(sync == GameRecordWriter.BLOCK_SYNC && blockRecords > 0 && rawLength > 0
+				&& rawLength <= MAX_BLOCK_BYTES && compressedLength > 0 && compressedLength <= MAX_BLOCK_BYTES,
+				"Corrupt archive block header after record %s", recordsRead);
+
+		if (input.capacity() < compressedLength) {
+			input = ByteBuffer.allocateDirect(compressedLength).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		input.clear().limit(compressedLength);
+		Preconditions.checkState(readFully(input), "Archive truncated after record %s", recordsRead);
+		input.flip();
+		remaining -= GameRecordWriter.BLOCK_HEADER_BYTES + compressedLength;
+		if (compressed.length < compressedLength) {
+			compressed = new byte[compressedLength];
+		}
+		input.get(compressed, 0, compressedLength);
+		if (raw.length < rawLength) {
+			raw = new byte[rawLength];
+		}
+		inflater.reset();
+		inflater.setInput(compressed, 0, compressedLength);
+		try {
+			Preconditions.checkState(inflater.inflate(raw, 0, rawLength) == rawLength && inflater.finished(),
+					"Corrupt archive block after record %s, wrong length", recordsRead);
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Corrupt archive block after record " + recordsRead, e);
+		}
+		crc.reset();
+		crc.update(raw, 0, rawLength);
+		Preconditions.checkState((int) crc.getValue() == blockCrc, "Corrupt archive block after record %s, wrong CRC", recordsRead);
+		position = 0;
+		return true;
+	}
+
+	/**
+	 * @return false if the channel ends before the first byte
+	 */
+	private boolean readFully(ByteBuffer buffer) throws IOException {
+		final int start = buffer.position();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				Preconditions.checkState(buffer.position() == start, "Archive truncated after record %s", recordsRead);
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int getVarint() {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			Preconditions.checkState(position < rawLength && shift < Integer.SIZE, "Corrupt archive record %s", recordsRead);
+			final byte next = raw[position++];
+			value |= (next & 0x7F) << shift;
+			if (next >= 0) {
+				return value;
+			}
+		}
+	}
+}
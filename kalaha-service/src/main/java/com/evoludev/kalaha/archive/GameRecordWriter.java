@@ -0,0 +1,202 @@
+package com.evoludev.kalaha.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import com.evoludev.kalaha.game.GamePosition;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.google.common.base.Preconditions;
+
+/**
+ * Streams {@link GameRecord}s into a channel as independently compressed blocks, holding one block in memory.
+ * <p>
+ * Archive layout: file header (magic, version), then blocks. A block header holds the sync marker, number
+ * of records, raw and compressed length and CRC32 of the raw bytes, followed by the deflated records.
+ * Blocks can be found from any offset by the sync marker and decoded independently.
+ * <p>
+ * Record layout: houses per player and initial seeds (varints), flags (bit 0 - custom start position,
+ * followed by player to move and seeds of all pits as varints), move count (varint), house numbers packed
+ * at {@link #getMoveBits(KalahaRules)} bits each, final position checksum (int).
+ */
+public final class GameRecordWriter implements Closeable {
+
+	public static final int FILE_MAGIC = 0x4B475231;
+	public static final int VERSION = 1;
+	public static final int FILE_HEADER_BYTES = 2 * Integer.BYTES;
+	public static final long BLOCK_SYNC = 0x4B414C4148414231L;
+	public static final int BLOCK_HEADER_BYTES = Long.BYTES + 4 * Integer.BYTES;
+	public static final int DEFAULT_BLOCK_BYTES = 256 << 10;
+
+	static final int FLAG_CUSTOM_START = 1;
+
+	private final WritableByteChannel channel;
+	private final int blockBytes;
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final CRC32 crc = new CRC32();
+	/* Deflater takes arrays only, channel writes go through the direct buffer */
+	private byte[] raw;
+	private byte[] compressed;
+	private ByteBuffer output;
+	private int rawLength;
+	private int records;
+	private long recordsWritten;
+	private boolean closed;
+
+	/**
+	 * @param blockBytes raw bytes of records collected before a block is compressed and written
+	 */
+	public GameRecordWriter(WritableByteChannel channel, int blockBytes) throws IOException {
+		Preconditions.checkArgument(blockBytes > 0, "Block size must be positive, got: %s", blockBytes);
+		this.channel = channel;
+		this.blockBytes = blockBytes;
+		this.raw = new byte[blockBytes + 64];
+		this.compressed = new byte[raw.length + (raw.length >> 6) + 64];
+		this.output = ByteBuffer.allocateDirect(BLOCK_HEADER_BYTES + compressed.length).order(ByteOrder.LITTLE_ENDIAN);
+		output.putInt(FILE_MAGIC).putInt(VERSION).flip();
+		writeFully(output);
+	}
+
+	/**
+	 * Creates or truncates given file
+	 */
+	public static GameRecordWriter create(Path file) throws IOException {
+		return new GameRecordWriter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING), DEFAULT_BLOCK_BYTES);
+	}
+
+	/**
+	 * @return bits per packed house number, 3 for the standard 6 houses
+	 */
+	public static int getMoveBits(KalahaRules rules) {
+		return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(rules.getHousesPerPlayer() - 1));
+	}
+
+	public void write(GameRecord record) throws IOException {
+		final byte[] moves = new byte[record.getMoveCount()];
+		for (int ply = 0; ply < moves.length; ply++) {
+			moves[ply] = (byte) record.getMove(ply);
+		}
+		write(record.getStart(), record.isInitialStart(), moves, moves.length, record.getFinalChecksum());
+	}
+
+	/**
+	 * Writes a record without creating it, for bulk export
+	 * @param initialStart true if the start is the initial position of its rules, which is then not stored
+	 * @param moves house numbers played, first <i>moveCount</i> entries are used
+	 */
+	public void write(GamePosition start, boolean initialStart, byte[] moves, int moveCount, int finalChecksum) throws IOException {
+		Preconditions.checkState(!closed, "Writer is closed");
+		final KalahaRules rules = start.getRules();
+		final int moveBits = getMoveBits(rules);
+		final int maxBytes = 5 * (start.getPitsCount() + 4) + 1 + (moveCount * moveBits + 7) / 8 + Integer.BYTES;
+		if (rawLength > 0 && rawLength + maxBytes > blockBytes) {
+			flushBlock();
+		}
+		if (maxBytes > raw.length) {
+			// Single record bigger than a block
+			raw = new byte[maxBytes];
+		}
+
+		int at = putVarint(rawLength, rules.getHousesPerPlayer());
+		at = putVarint(at, rules.getInitialSeeds());
+		raw[at++] = (byte) (initialStart ? 0 : FLAG_CUSTOM_START);
+		if (!initialStart) {
+			at = putVarint(at, start.getPlayerToMove());
+			for (int pit = 0; pit < start.getPitsCount(); pit++) {
+				at = putVarint(at, start.getSeeds(pit));
+			}
+		}
+		at = putVarint(at, moveCount);
+		long bits = 0;
+		int bitCount = 0;
+		for (int ply = 0; ply < moveCount; ply++) {
+			bits |= (long) moves[ply] << bitCount;
+			bitCount += moveBits;
+			while (bitCount >= Byte.SIZE) {
+				raw[at++] = (byte) bits;
+				bits >>>= Byte.SIZE;
+				bitCount -= Byte.SIZE;
+			}
+		}
+		if (bitCount > 0) {
+			raw[at++] = (byte) bits;
+		}
+		for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+			raw[at++] = (byte) (finalChecksum >>> shift);
+		}
+		rawLength = at;
+		records++;
+		recordsWritten++;
+	}
+
+	public long getRecordsWritten() {
+		return recordsWritten;
+	}
+
+	/**
+	 * Writes pending records as a block and closes the channel
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (records > 0) {
+				flushBlock();
+			}
+		} finally {
+			deflater.end();
+			channel.close();
+		}
+	}
+
+	private void flushBlock() throws IOException {
+		crc.reset();
+		crc.update(raw, 0, rawLength);
+		deflater.reset();
+		deflater.setInput(raw, 0, rawLength);
+		deflater.finish();
+		int compressedLength = 0;
+		while (!deflater.finished()) {
+			if (compressedLength == compressed.length) {
+				compressed = Arrays.copyOf(compressed, compressed.length * 2);
+			}
+			compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+		}
+		if (output.capacity() < BLOCK_HEADER_BYTES + compressedLength) {
+			output = ByteBuffer.allocateDirect(BLOCK_HEADER_BYTES + compressed.length).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		output.clear();
+		output.putLong(BLOCK_SYNC).putInt(records).putInt(rawLength).putInt(compressedLength).putInt((int) crc.getValue());
+		output.put(compressed, 0, compressedLength).flip();
+		writeFully(output);
+		rawLength = 0;
+		records = 0;
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private int putVarint(int at, int value) {
+		while ((value & ~0x7F) != 0) {
+			raw[at++] = (byte) (value & 0x7F | 0x80);
+			value >>>= 7;
+		}
+		raw[at++] = (byte) value;
+		return at;
+	}
+}
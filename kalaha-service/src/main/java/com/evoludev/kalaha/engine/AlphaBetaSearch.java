@@ -0,0 +1,391 @@
+package com.evoludev.kalaha.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.metrics.KalahaMetrics;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Negamax alpha-beta searcher over {@link KalahaBoard} with iterative deepening and a transposition table.
+ * Moves are tried in order: transposition table move, extra-turn moves, captures, then the rest.
+ * Extra turns keep the search window of the same player instead of negating it.
+ * Scores are store differences from the point of view of the player to move.
+ * <p>
+ * With more than one thread (see {@link #setThreads(int)}) search runs Lazy SMP: helper threads run
+ * their own iterative deepening over private board copies, half of them one ply deeper, all sharing
+ * the lock-free transposition table. The deepest completed iteration of any thread wins.
+ */
+public class AlphaBetaSearch {
+
+	public static final int DEFAULT_TABLE_SIZE_MB = 16;
+
+	private static final int INFINITY = 1 << 24;
+	/** Limits are checked every that many nodes + 1 */
+	private static final long LIMITS_CHECK_MASK = 0x3FF;
+	private static final BooleanSupplier NEVER_STOP = () -> false;
+
+	private static final int ORDER_TABLE_MOVE = 1 << 20;
+	private static final int ORDER_EXTRA_TURN = 1 << 16;
+	private static final int ORDER_CAPTURE = 1 << 8;
+
+	private final TranspositionTable table;
+	private int threads = 1;
+	private ExecutorService helperExecutor;
+	private EndgameDatabase endgameDatabase;
+	/** State of the search in progress, for {@link #stop()} */
+	private volatile SharedState running;
+
+	public AlphaBetaSearch() {
+		this(new TranspositionTable(DEFAULT_TABLE_SIZE_MB));
+	}
+
+	public AlphaBetaSearch(TranspositionTable table) {
+		this.table = table;
+	}
+
+	public TranspositionTable getTable() {
+		return table;
+	}
+
+	public EndgameDatabase getEndgameDatabase() {
+		return endgameDatabase;
+	}
+
+	/**
+	 * Sets database of exact endgame values, positions it covers are not searched further
+	 */
+	public void setEndgameDatabase(EndgameDatabase endgameDatabase) {
+		this.endgameDatabase = endgameDatabase;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets number of threads searching in parallel, including the calling thread
+	 */
+	public synchronized void setThreads(int threads) {
+		Preconditions.checkArgument(threads > 0, "At least one search thread is required, got: " + threads);
+		if (threads != this.threads) {
+			shutdown();
+			this.threads = threads;
+			if (threads > 1) {
+				helperExecutor = Executors.newFixedThreadPool(threads - 1,
+						new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kalaha-search-%d").build());
+			}
+		}
+	}
+
+	/**
+	 * Stops helper threads, if any. Search falls back to single thread afterwards.
+	 */
+	public synchronized void shutdown() {
+		if (helperExecutor != null) {
+			helperExecutor.shutdownNow();
+			helperExecutor = null;
+		}
+		threads = 1;
+	}
+
+	/**
+	 * Stops the search in progress, if any, from any thread. It returns the best move found so far.
+	 */
+	public void stop() {
+		final SharedState shared = running;
+		if (shared != null) {
+			shared.stop = true;
+		}
+	}
+
+	/**
+	 * Searches given position within given limits. Given board is not modified.
+	 * @return best move found and search statistics
+	 * @throws {@link IllegalArgumentException} - in case game has finished on given board
+	 */
+	public SearchResult search(KalahaBoard position, SearchLimits limits) {
+		return search(position, limits, NEVER_STOP);
+	}
+
+	/**
+	 * Searches given position within given limits, stopping also once given condition holds. Unlike {@link #stop()},
+	 * the condition cannot miss a search that has not started yet.
+	 * @param stopCondition polled by searching threads now and then, from the start of the search
+	 */
+	public synchronized SearchResult search(KalahaBoard position, SearchLimits limits, BooleanSupplier stopCondition) {
+		Preconditions.checkArgument(!position.isGameFinished(), "Game has finished, nothing to search");
+		table.newSearch();
+		final SharedState shared = new SharedState(limits, stopCondition, System.nanoTime());
+		running = shared;
+		final Searcher main = new Searcher(position, shared);
+
+		List<Searcher> helpers = new ArrayList<>();
+		List<Future<?>> helperFutures = new ArrayList<>();
+		for (int id = 1; id < threads; id++) {
+			final Searcher helper = new Searcher(position, shared);
+			final int startDepth = 1 + (id & 1);
+			helpers.add(helper);
+			helperFutures.add(helperExecutor.submit(() -> helper.iterate(startDepth, limits.getMaxDepth())));
+		}
+
+		main.iterate(1, limits.getMaxDepth());
+		shared.stop = true;
+
+		Searcher best = main;
+		long nodes = main.nodes;
+		for (int idx = 0; idx < helpers.size(); idx++) {
+			try {
+				Uninterruptibles.getUninterruptibly(helperFutures.get(idx));
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Search helper thread failed", e.getCause());
+			}
+			Searcher helper = helpers.get(idx);
+			nodes += helper.nodes;
+			if (helper.depthReached > best.depthReached) {
+				best = helper;
+			}
+		}
+		running = null;
+		final long elapsedNanos = System.nanoTime() - shared.startNanos;
+		KalahaMetrics.recordSearchLatency(elapsedNanos);
+		return new SearchResult(best.bestMove, best.bestScore, best.depthReached, nodes, elapsedNanos);
+	}
+
+	/**
+	 * Stop flag, limits and node count shared by all threads of one search
+	 */
+	private static class SharedState {
+
+		private final long maxNodes;
+		private final long maxNanos;
+		private final long startNanos;
+		private final BooleanSupplier stopCondition;
+		private final AtomicLong nodes = new AtomicLong();
+		private volatile boolean stop;
+
+		SharedState(SearchLimits limits, BooleanSupplier stopCondition, long startNanos) {
+			this.stopCondition = stopCondition;
+			this.maxNodes = limits.getMaxNodes();
+			this.maxNanos = limits.getMaxTimeMillis() == Long.MAX_VALUE ? Long.MAX_VALUE
+					: TimeUnit.MILLISECONDS.toNanos(limits.getMaxTimeMillis());
+			this.startNanos = startNanos;
+		}
+	}
+
+	/**
+	 * Single search over a private copy of the position
+	 */
+	private class Searcher {
+
+		private final KalahaBoard board;
+		private final int housesPerPlayer;
+		private final SharedState shared;
+		private final int[][] moves;
+		private final int[][] moveOrder;
+		private long nodes;
+		private long reportedNodes;
+		private boolean stopped;
+		/** Set when a line was cut by depth, i.e. the iteration result is not an exact game value */
+		private boolean depthLimited;
+		private int rootBestMove;
+		private int rootBestScore;
+		/* Result of the deepest completed iteration */
+		private int bestMove;
+		private int bestScore;
+		private int depthReached;
+
+		Searcher(KalahaBoard position, SharedState shared) {
+			this.board = position.copy();
+			this.housesPerPlayer = board.getHousesPerPlayer();
+			this.shared = shared;
+			this.bestMove = Integer.numberOfTrailingZeros(board.getLegalMoves());
+			this.moves = new int[SearchLimits.MAX_DEPTH + 1][housesPerPlayer];
+			this.moveOrder = new int[SearchLimits.MAX_DEPTH + 1][housesPerPlayer];
+		}
+
+		/**
+		 * Iterative deepening until given depth, a limit is hit or position is solved
+		 */
+		void iterate(int startDepth, int maxDepth) {
+			for (int depth = startDepth; depth <= maxDepth; depth++) {
+				int score = searchRoot(depth);
+				if (stopped) {
+					// Previous best is searched first, so any move completed in unfinished iteration is at least as good
+					if (rootBestMove >= 0) {
+						bestMove = rootBestMove;
+						bestScore = rootBestScore;
+					}
+					return;
+				}
+				bestMove = rootBestMove;
+				bestScore = score;
+				depthReached = depth;
+				if (!depthLimited) {
+					return;
+				}
+			}
+		}
+
+		int searchRoot(int depth) {
+			depthLimited = false;
+			rootBestMove = -1;
+			rootBestScore = -INFINITY;
+			int alpha = -INFINITY;
+			final long entry = table.probe(board.getHash());
+			final int count = orderMoves(0, entry == TranspositionTable.NO_ENTRY ? -1 : TranspositionTable.getMove(entry));
+			final int mover = board.getPlayerToMove();
+			for (int idx = 0; idx < count; idx++) {
+				final int move = moves[0][idx];
+				final long undo = board.makeMove(move);
+				final int score = board.getPlayerToMove() == mover ? negamax(depth - 1, 1, alpha, INFINITY)
+						: -negamax(depth - 1, 1, -INFINITY, -alpha);
+				board.unmakeMove(undo);
+				if (stopped) {
+					break;
+				}
+				if (score > rootBestScore) {
+					rootBestScore = score;
+					rootBestMove = move;
+					alpha = Math.max(alpha, score);
+				}
+			}
+			if (!stopped) {
+				table.store(board.getHash(), rootBestMove, depth, rootBestScore, TranspositionTable.BOUND_EXACT);
+			}
+			return rootBestScore;
+		}
+
+		private int negamax(int depth, int ply, int alpha, int beta) {
+			if ((++nodes & LIMITS_CHECK_MASK) == 0) {
+				checkLimits();
+			}
+			if (stopped) {
+				return 0;
+			}
+			if (board.isGameFinished()) {
+				return evaluate();
+			}
+			if (endgameDatabase != null && endgameDatabase.contains(board)) {
+				return endgameDatabase.getScore(board);
+			}
+			if (depth == 0) {
+				depthLimited = true;
+				return evaluate();
+			}
+
+			final long hash = board.getHash();
+			final long entry = table.probe(hash);
+			int tableMove = -1;
+			if (entry != TranspositionTable.NO_ENTRY) {
+				tableMove = TranspositionTable.getMove(entry);
+			}
+			if (entry != TranspositionTable.NO_ENTRY && TranspositionTable.getDepth(entry) >= depth) {
+				final int ttScore = TranspositionTable.getScore(entry);
+				final int bound = TranspositionTable.getBound(entry);
+				if (bound == TranspositionTable.BOUND_EXACT
+						|| (bound == TranspositionTable.BOUND_LOWER && ttScore >= beta)
+						|| (bound == TranspositionTable.BOUND_UPPER && ttScore <= alpha)) {
+					// Stored depth may have been cut, be conservative about solved state
+					depthLimited = true;
+					return ttScore;
+				}
+			}
+
+			final int originalAlpha = alpha;
+			final int count = orderMoves(ply, tableMove);
+			final int mover = board.getPlayerToMove();
+			int bestScore = -INFINITY;
+			int bestMove = moves[ply][0];
+			for (int idx = 0; idx < count; idx++) {
+				final int move = moves[ply][idx];
+				final long undo = board.makeMove(move);
+				final int score = board.getPlayerToMove() == mover ? negamax(depth - 1, ply + 1, alpha, beta)
+						: -negamax(depth - 1, ply + 1, -beta, -alpha);
+				board.unmakeMove(undo);
+				if (stopped) {
+					return 0;
+				}
+				if (score > bestScore) {
+					bestScore = score;
+					bestMove = move;
+					if (score > alpha) {
+						alpha = score;
+						if (alpha >= beta) {
+							break;
+						}
+					}
+				}
+			}
+
+			final int bound = bestScore <= originalAlpha ? TranspositionTable.BOUND_UPPER
+					: bestScore >= beta ? TranspositionTable.BOUND_LOWER : TranspositionTable.BOUND_EXACT;
+			table.store(hash, bestMove, depth, bestScore, bound);
+			return bestScore;
+		}
+
+		/**
+		 * @return store difference from the point of view of the player to move
+		 */
+		private int evaluate() {
+			final int player = board.getPlayerToMove();
+			return board.getSeeds(board.getStorePit(player))
+					- board.getSeeds(board.getStorePit(board.getNextPlayer(player)));
+		}
+
+		/**
+		 * Fills moves of given ply with legal moves, best candidates first
+		 * @param tableMove move stored in transposition table, -1 if none
+		 * @return number of legal moves
+		 */
+		private int orderMoves(int ply, int tableMove) {
+			final int[] plyMoves = moves[ply];
+			final int[] plyOrder = moveOrder[ply];
+			final int player = board.getPlayerToMove();
+			int count = 0;
+			for (int legal = board.getLegalMoves(); legal != 0; legal &= legal - 1) {
+				final int move = Integer.numberOfTrailingZeros(legal);
+				int order = move == tableMove ? ORDER_TABLE_MOVE : 0;
+				final int lastPit = board.getLastPit(player, move);
+				final int sown = board.getSeeds(board.getHousePit(player, move));
+				if (lastPit == board.getStorePit(player)) {
+					// Extra turns closer to the store keep more options for the follow-up move
+					order += ORDER_EXTRA_TURN + move;
+				} else if (sown < housesPerPlayer * 2 + 1 && board.isHouse(lastPit) && board.getOwner(lastPit) == player
+						&& board.getSeeds(lastPit) == 0) {
+					order += ORDER_CAPTURE + board.getSeeds(board.getOppositePit(lastPit));
+				}
+				// Insertion sort, there are at most housesPerPlayer moves
+				int pos = count++;
+				while (pos > 0 && plyOrder[pos - 1] < order) {
+					plyMoves[pos] = plyMoves[pos - 1];
+					plyOrder[pos] = plyOrder[pos - 1];
+					pos--;
+				}
+				plyMoves[pos] = move;
+				plyOrder[pos] = order;
+			}
+			return count;
+		}
+
+		private void checkLimits() {
+			final long totalNodes = shared.nodes.addAndGet(nodes - reportedNodes);
+			reportedNodes = nodes;
+			if (shared.stop || totalNodes >= shared.maxNodes || System.nanoTime() - shared.startNanos >= shared.maxNanos
+					|| shared.stopCondition.getAsBoolean()) {
+				stopped = true;
+				shared.stop = true;
+			}
+		}
+	}
+}
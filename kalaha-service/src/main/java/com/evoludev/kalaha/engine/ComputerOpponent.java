@@ -0,0 +1,159 @@
+package com.evoludev.kalaha.engine;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+import com.evoludev.kalaha.game.GamePosition;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Computer player searching on a background thread, so that the thread driving the game (e.g. Swing event
+ * dispatch thread) never blocks. Chosen moves are handed back through the given executor.
+ * <p>
+ * While the opponent is thinking, {@link #ponder(GamePosition)} searches the positions after the opponent's
+ * replies, the predicted reply first. Each reply gets the full move time, so when the opponent plays
+ * a pondered reply the computer answers at once. Pondering also fills the shared transposition table,
+ * which speeds up the search after any other reply.
+ * <p>
+ * Every call cancels work still running for an earlier call: a move not delivered yet is dropped.
+ */
+public class ComputerOpponent {
+
+	public static final long DEFAULT_MOVE_TIME_MILLIS = 1000;
+	/** Depth of the search predicting the opponent's reply */
+	private static final int PREDICTION_DEPTH = 6;
+
+	private final AlphaBetaSearch search;
+	private final Executor moveExecutor;
+	private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kalaha-computer-%d").build());
+	/** Searched positions of the current pondering, by position after the opponent's reply */
+	private final Map<GamePosition, SearchResult> pondered = new ConcurrentHashMap<>();
+	/** Incremented by every call, work of older calls is abandoned */
+	private final AtomicLong generation = new AtomicLong();
+	private final AtomicInteger ponderHits = new AtomicInteger();
+	private volatile long moveTimeMillis = DEFAULT_MOVE_TIME_MILLIS;
+
+	/**
+	 * @param search searcher used only by this opponent from now on
+	 * @param moveExecutor runs callbacks with chosen moves, e.g. <i>SwingUtilities::invokeLater</i>
+	 */
+	public ComputerOpponent(AlphaBetaSearch search, Executor moveExecutor) {
+		this.search = search;
+		this.moveExecutor = moveExecutor;
+	}
+
+	public long getMoveTimeMillis() {
+		return moveTimeMillis;
+	}
+
+	/**
+	 * Sets time budget of a move, applies to pondering started afterwards
+	 */
+	public void setMoveTimeMillis(long moveTimeMillis) {
+		Preconditions.checkArgument(moveTimeMillis > 0, "Move time must be positive, got: %s", moveTimeMillis);
+		this.moveTimeMillis = moveTimeMillis;
+	}
+
+	/**
+	 * @return number of moves answered from pondering
+	 */
+	public int getPonderHits() {
+		return ponderHits.get();
+	}
+
+	/**
+	 * Starts searching given position, the computer being the player to move.
+	 * The chosen house is passed to given callback through the move executor, unless cancelled meanwhile.
+	 */
+	public void play(GamePosition position, IntConsumer onMove) {
+		Preconditions.checkArgument(!position.isGameFinished(), "Game has finished, nothing to play");
+		final long current = cancel();
+		searchExecutor.execute(() -> {
+			SearchResult result = pondered.get(position);
+			if (result != null) {
+				ponderHits.incrementAndGet();
+			} else if (generation.get() == current) {
+				result = search.search(position.toBoard(), SearchLimits.time(moveTimeMillis), isCancelled(current));
+			}
+			pondered.clear();
+			if (result != null && generation.get() == current) {
+				final int house = result.getBestMove();
+				moveExecutor.execute(() -> {
+					if (generation.get() == current) {
+						onMove.accept(house);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Starts searching the replies to given position, the opponent being the player to move.
+	 * Runs until all replies are searched or the next call.
+	 * @return future completed once pondering ends, either way
+	 */
+	public CompletableFuture<Void> ponder(GamePosition position) {
+		final long current = cancel();
+		if (position.isGameFinished()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		final int opponent = position.getPlayerToMove();
+		return CompletableFuture.runAsync(() -> {
+			if (generation.get() != current) {
+				return;
+			}
+			final int predicted = search.search(position.toBoard(), SearchLimits.depth(PREDICTION_DEPTH),
+					isCancelled(current)).getBestMove();
+			final int others = position.getLegalMoves() & ~(1 << predicted);
+			ponderReply(position.play(predicted), opponent, current);
+			for (int replies = others; replies != 0; replies &= replies - 1) {
+				ponderReply(position.play(Integer.numberOfTrailingZeros(replies)), opponent, current);
+			}
+		}, searchExecutor);
+	}
+
+	/**
+	 * Abandons the running search and any move not delivered yet. Searches check the generation themselves,
+	 * so one about to start is abandoned too
+	 * @return generation of the next call
+	 */
+	public long cancel() {
+		final long next = generation.incrementAndGet();
+		search.stop();
+		return next;
+	}
+
+	/**
+	 * Cancels the search and stops the background thread
+	 */
+	public void shutdown() {
+		cancel();
+		searchExecutor.shutdownNow();
+	}
+
+	private BooleanSupplier isCancelled(long current) {
+		return () -> generation.get() != current;
+	}
+
+	private void ponderReply(GamePosition reply, int opponent, long current) {
+		// Extra turns of the opponent are pondered once they are played
+		if (generation.get() != current || reply.isGameFinished() || reply.getPlayerToMove() == opponent
+				|| pondered.containsKey(reply)) {
+			return;
+		}
+		final SearchResult result = search.search(reply.toBoard(), SearchLimits.time(moveTimeMillis), isCancelled(current));
+		if (generation.get() == current) {
+			pondered.put(reply, result);
+		}
+	}
+}
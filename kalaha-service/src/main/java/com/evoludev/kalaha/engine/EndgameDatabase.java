@@ -0,0 +1,98 @@
+package com.evoludev.kalaha.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.google.common.base.Preconditions;
+
+/**
+ * Exact values of all positions with up to {@link #getMaxSeeds()} seeds left in houses, as built by
+ * {@link EndgameDatabaseBuilder}. The file is read through a read-only {@link MappedByteBuffer}, so it is
+ * never copied to the heap and several JVMs opening the same file share it via the page cache.
+ * <p>
+ * File layout: magic, houses per player, max seeds, offset of every level, then one signed byte per
+ * position - seeds the player to move collects from the remaining seeds minus seeds the opponent collects.
+ */
+public final class EndgameDatabase {
+
+	static final long MAGIC = 0x4B4C484547444231L; // "KLHEGDB1"
+	static final int HEADER_FIXED_BYTES = Long.BYTES + 2 * Integer.BYTES;
+	/** Values are stored as signed bytes */
+	public static final int MAX_SEEDS_LIMIT = Byte.MAX_VALUE;
+
+	private final ByteBuffer buffer;
+	private final EndgameIndex index;
+	private final int housesPerPlayer;
+	private final int maxSeeds;
+	private final long[] levelOffsets;
+
+	EndgameDatabase(ByteBuffer buffer) {
+		this.buffer = buffer;
+		Preconditions.checkArgument(buffer.getLong(0) == MAGIC, "Not an endgame database");
+		this.housesPerPlayer = buffer.getInt(Long.BYTES);
+		this.maxSeeds = buffer.getInt(Long.BYTES + Integer.BYTES);
+		this.index = new EndgameIndex(housesPerPlayer, maxSeeds);
+		this.levelOffsets = new long[maxSeeds + 1];
+		for (int seeds = 0; seeds <= maxSeeds; seeds++) {
+			levelOffsets[seeds] = buffer.getLong(HEADER_FIXED_BYTES + seeds * Long.BYTES);
+		}
+	}
+
+	/**
+	 * Maps given database file read-only
+	 */
+	public static EndgameDatabase open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Preconditions.checkArgument(channel.size() <= Integer.MAX_VALUE, "Endgame database over 2GB: " + file);
+			return new EndgameDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * @return true if position on given board has a stored value
+	 */
+	public boolean contains(KalahaBoard board) {
+		return board.getHousesPerPlayer() == housesPerPlayer
+				&& board.getHouseSeeds(0) + board.getHouseSeeds(1) <= maxSeeds;
+	}
+
+	/**
+	 * @return seeds the player to move collects from the seeds left in houses minus seeds his opponent collects,
+	 * with perfect play of both
+	 */
+	public int getValue(KalahaBoard board) {
+		final int player = board.getPlayerToMove();
+		final int opponent = board.getNextPlayer(player);
+		// Same ranking as EndgameIndex.rank, read straight from the board to keep lookups allocation free
+		long rank = 0;
+		int bar = -1;
+		for (int cell = 0; cell < housesPerPlayer * 2 - 1; cell++) {
+			bar += board.getSeeds(cell < housesPerPlayer ? board.getHousePit(player, cell)
+					: board.getHousePit(opponent, cell - housesPerPlayer)) + 1;
+			rank += index.binomial(bar, cell + 1);
+		}
+		return buffer.get((int) (levelOffsets[board.getHouseSeeds(player) + board.getHouseSeeds(opponent)] + rank));
+	}
+
+	/**
+	 * @return final store difference (player to move minus opponent) with perfect play of both
+	 */
+	public int getScore(KalahaBoard board) {
+		final int player = board.getPlayerToMove();
+		return board.getSeeds(board.getStorePit(player)) - board.getSeeds(board.getStorePit(board.getNextPlayer(player)))
+				+ getValue(board);
+	}
+
+	public int getHousesPerPlayer() {
+		return housesPerPlayer;
+	}
+
+	public int getMaxSeeds() {
+		return maxSeeds;
+	}
+}
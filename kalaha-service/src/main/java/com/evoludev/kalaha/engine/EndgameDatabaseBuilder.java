@@ -0,0 +1,156 @@
+package com.evoludev.kalaha.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.google.common.base.Preconditions;
+
+/**
+ * Builds {@link EndgameDatabase} files by retrograde analysis: levels are solved bottom-up by number of seeds
+ * left in houses, since no move adds seeds to houses. Moves which keep all seeds in houses stay within a level
+ * but lower {@link EndgameIndex#potential(int[])}, so each level is solved in waves of equal potential.
+ * Positions of one wave only depend on earlier waves and lower levels, and are solved in parallel.
+ * Values are written straight to the memory-mapped output file.
+ * <p>
+ * Usage: <i>EndgameDatabaseBuilder &lt;output file&gt; &lt;max seeds&gt; [houses per player]</i>
+ */
+public final class EndgameDatabaseBuilder {
+
+	private final KalahaRules rules;
+	private final EndgameIndex index;
+	private final ByteBuffer buffer;
+	private final EndgameDatabase database;
+	private final long[] levelOffsets;
+	private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+	private EndgameDatabaseBuilder(KalahaRules rules, int maxSeeds, ByteBuffer buffer, long[] levelOffsets) {
+		this.rules = rules;
+		this.index = new EndgameIndex(rules.getHousesPerPlayer(), maxSeeds);
+		this.buffer = buffer;
+		this.levelOffsets = levelOffsets;
+		this.database = new EndgameDatabase(buffer);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: EndgameDatabaseBuilder <output file> <max seeds> [houses per player]");
+			System.exit(1);
+		}
+		int housesPerPlayer = args.length > 2 ? Integer.parseInt(args[2]) : KalahaRules.DEFAULT.getHousesPerPlayer();
+		long start = System.nanoTime();
+		build(Paths.get(args[0]), housesPerPlayer, Integer.parseInt(args[1]));
+		System.out.println("Built " + args[0] + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+	}
+
+	/**
+	 * Solves all positions with up to maxSeeds seeds in houses and writes them to given file
+	 */
+	public static void build(Path file, int housesPerPlayer, int maxSeeds) throws IOException {
+		Preconditions.checkArgument(maxSeeds >= 0 && maxSeeds <= EndgameDatabase.MAX_SEEDS_LIMIT,
+				"Max seeds must be between 0 and " + EndgameDatabase.MAX_SEEDS_LIMIT + ", got: " + maxSeeds);
+		// Initial seeds do not matter, boards are set up position by position
+		KalahaRules rules = new KalahaRules(KalahaRules.DEFAULT.getNumPlayers(), housesPerPlayer, 1);
+		EndgameIndex index = new EndgameIndex(housesPerPlayer, maxSeeds);
+		long[] levelOffsets = new long[maxSeeds + 1];
+		long size = EndgameDatabase.HEADER_FIXED_BYTES + (long) levelOffsets.length * Long.BYTES;
+		for (int seeds = 0; seeds <= maxSeeds; seeds++) {
+			levelOffsets[seeds] = size;
+			size += index.getLevelSize(seeds);
+		}
+		EndgameIndex.checkSize(housesPerPlayer, maxSeeds, size);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putLong(0, EndgameDatabase.MAGIC);
+			buffer.putInt(Long.BYTES, housesPerPlayer);
+			buffer.putInt(Long.BYTES + Integer.BYTES, maxSeeds);
+			for (int seeds = 0; seeds <= maxSeeds; seeds++) {
+				buffer.putLong(EndgameDatabase.HEADER_FIXED_BYTES + seeds * Long.BYTES, levelOffsets[seeds]);
+			}
+			EndgameDatabaseBuilder builder = new EndgameDatabaseBuilder(rules, maxSeeds, buffer, levelOffsets);
+			for (int seeds = 0; seeds <= maxSeeds; seeds++) {
+				builder.solveLevel(seeds);
+			}
+			buffer.force();
+		}
+	}
+
+	private void solveLevel(int seeds) {
+		final int levelSize = (int) index.getLevelSize(seeds);
+		final int[] potentials = new int[levelSize];
+		IntStream.range(0, levelSize).parallel().forEach(rank -> {
+			int[] houses = workers.get().houses;
+			index.unrank(seeds, rank, houses);
+			potentials[rank] = index.potential(houses);
+		});
+
+		// Counting sort of ranks by potential
+		final int[] waveStarts = new int[seeds * index.getHousesPerPlayer() + 2];
+		for (int potential : potentials) {
+			waveStarts[potential + 1]++;
+		}
+		for (int wave = 1; wave < waveStarts.length; wave++) {
+			waveStarts[wave] += waveStarts[wave - 1];
+		}
+		final int[] ranksByPotential = new int[levelSize];
+		final int[] fill = waveStarts.clone();
+		for (int rank = 0; rank < levelSize; rank++) {
+			ranksByPotential[fill[potentials[rank]]++] = rank;
+		}
+
+		for (int wave = 0; wave + 1 < waveStarts.length; wave++) {
+			IntStream.range(waveStarts[wave], waveStarts[wave + 1]).parallel().forEach(idx -> {
+				final int rank = ranksByPotential[idx];
+				buffer.put((int) (levelOffsets[seeds] + rank), (byte) workers.get().solve(seeds, rank));
+			});
+		}
+	}
+
+	/**
+	 * Per thread scratch board, player 0 is always the player to move
+	 */
+	private class Worker {
+
+		private final int housesPerPlayer = index.getHousesPerPlayer();
+		private final KalahaBoard board = new KalahaBoard(rules);
+		private final int[] houses = new int[housesPerPlayer * 2];
+
+		int solve(int seeds, int rank) {
+			index.unrank(seeds, rank, houses);
+			for (int houseNum = 0; houseNum < housesPerPlayer; houseNum++) {
+				board.setSeeds(board.getHousePit(0, houseNum), houses[houseNum]);
+				board.setSeeds(board.getHousePit(1, houseNum), houses[housesPerPlayer + houseNum]);
+			}
+			board.setSeeds(board.getStorePit(0), 0);
+			board.setSeeds(board.getStorePit(1), 0);
+			board.setPlayerToMove(0);
+
+			if (board.isGameFinished()) {
+				// Player who still has seeds collects them
+				return board.getHouseSeeds(0) - board.getHouseSeeds(1);
+			}
+			int best = Integer.MIN_VALUE;
+			for (int legal = board.getLegalMoves(); legal != 0; legal &= legal - 1) {
+				final long undo = board.makeMove(Integer.numberOfTrailingZeros(legal));
+				int value = board.getSeeds(board.getStorePit(0)) - board.getSeeds(board.getStorePit(1));
+				if (!board.isGameFinished()) {
+					final int next = database.getValue(board);
+					value += board.getPlayerToMove() == 0 ? next : -next;
+				}
+				board.unmakeMove(undo);
+				best = Math.max(best, value);
+			}
+			return best;
+		}
+	}
+}
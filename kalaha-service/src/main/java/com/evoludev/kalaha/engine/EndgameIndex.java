@@ -0,0 +1,102 @@
+package com.evoludev.kalaha.engine;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Indexing scheme of {@link EndgameDatabase}. Positions are grouped into levels by the number of seeds left in houses.
+ * Within a level, the house contents seen from the player to move (own houses first, then opponent houses)
+ * form a composition of the seed count, ranked by the combinatorial number system.
+ * Stores do not take part, since they do not affect how remaining seeds can be played.
+ */
+final class EndgameIndex {
+
+	private final int housesPerPlayer;
+	private final int cells;
+	private final int maxSeeds;
+	/** binomials[n][k] = n choose k */
+	private final long[][] binomials;
+
+	EndgameIndex(int housesPerPlayer, int maxSeeds) {
+		this.housesPerPlayer = housesPerPlayer;
+		this.cells = housesPerPlayer * 2;
+		this.maxSeeds = maxSeeds;
+		this.binomials = new long[maxSeeds + cells][cells];
+		for (int n = 0; n < binomials.length; n++) {
+			binomials[n][0] = 1;
+			for (int k = 1; k < cells && k <= n; k++) {
+				binomials[n][k] = binomials[n - 1][k - 1] + (k < n ? binomials[n - 1][k] : 0);
+			}
+		}
+	}
+
+	int getHousesPerPlayer() {
+		return housesPerPlayer;
+	}
+
+	int getMaxSeeds() {
+		return maxSeeds;
+	}
+
+	long binomial(int n, int k) {
+		return binomials[n][k];
+	}
+
+	/**
+	 * @return number of positions with given number of seeds in houses
+	 */
+	long getLevelSize(int seeds) {
+		return binomials[seeds + cells - 1][cells - 1];
+	}
+
+	/**
+	 * @param houses seeds in houses, own houses of the player to move first
+	 * @return rank of given house contents within its level
+	 */
+	int rank(int[] houses) {
+		long rank = 0;
+		int bar = -1;
+		for (int cell = 0; cell < cells - 1; cell++) {
+			bar += houses[cell] + 1;
+			rank += binomials[bar][cell + 1];
+		}
+		return (int) rank;
+	}
+
+	/**
+	 * Inverse of {@link #rank(int[])}
+	 * @param seeds level of the position
+	 * @param rank rank within the level
+	 * @param houses array to fill with house contents
+	 */
+	void unrank(int seeds, int rank, int[] houses) {
+		long rest = rank;
+		int upperBar = seeds + cells - 1;
+		for (int cell = cells - 2; cell >= 0; cell--) {
+			int bar = upperBar - 1;
+			while (binomials[bar][cell + 1] > rest) {
+				bar--;
+			}
+			rest -= binomials[bar][cell + 1];
+			houses[cell + 1] = upperBar - bar - 1;
+			upperBar = bar;
+		}
+		houses[0] = upperBar;
+	}
+
+	/**
+	 * Sum of seed distances to their owner's store. Every move keeping all seeds in houses lowers it,
+	 * so positions of one level can be solved in increasing potential order.
+	 */
+	int potential(int[] houses) {
+		int potential = 0;
+		for (int cell = 0; cell < cells; cell++) {
+			potential += houses[cell] * (housesPerPlayer - cell % housesPerPlayer);
+		}
+		return potential;
+	}
+
+	static void checkSize(int housesPerPlayer, int maxSeeds, long bytes) {
+		Preconditions.checkArgument(bytes <= Integer.MAX_VALUE, "Endgame database of " + maxSeeds + " seeds on "
+				+ housesPerPlayer + " houses per player would take " + bytes + " bytes, at most 2GB are supported");
+	}
+}
@@ -0,0 +1,338 @@
+package com.evoludev.kalaha.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.evoludev.kalaha.metrics.KalahaMetrics;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Monte Carlo Tree Search (UCT) player over {@link KalahaBoard}.
+ * <p>
+ * Tree nodes live in preallocated primitive arrays (a node pool), which are reset and reused by every search,
+ * so neither tree growth nor the random playouts allocate. Several workers of a work-stealing pool grow
+ * the same tree in parallel: a visit is counted when a worker passes a node on the way down and its reward
+ * only when the playout is back, which acts as a virtual loss steering other workers to different lines.
+ * <p>
+ * {@link SearchResult#getNodes()} reports playouts and {@link SearchResult#getScore()} the expected result
+ * of the chosen move in percent (win 100, draw 50).
+ */
+public class MctsPlayer {
+
+	public static final int DEFAULT_POOL_SIZE = 1 << 20;
+	public static final double DEFAULT_EXPLORATION = 1.4;
+
+	private static final int UNEXPANDED = 0;
+	private static final int EXPANDING = 1;
+	private static final int EXPANDED = 2;
+	/** Limits are checked every that many playouts + 1 */
+	private static final long LIMITS_CHECK_MASK = 0x3F;
+
+	/* Node pool, node 0 is the root */
+	private final int capacity;
+	private final int[] firstChild;
+	private final byte[] childCount;
+	private final byte[] move;
+	/** Player who made the move leading to the node, rewards are from his point of view */
+	private final byte[] mover;
+	private final AtomicIntegerArray visits;
+	/** Twice the sum of rewards: 2 per win, 1 per draw */
+	private final AtomicIntegerArray rewards;
+	private final AtomicIntegerArray expandState;
+	private final AtomicInteger allocated = new AtomicInteger();
+
+	private double exploration = DEFAULT_EXPLORATION;
+	private int threads = 1;
+	private ForkJoinPool pool;
+	private long seed = System.nanoTime();
+
+	public MctsPlayer() {
+		this(DEFAULT_POOL_SIZE);
+	}
+
+	/**
+	 * @param capacity maximum number of tree nodes, allocated once, must hold the root and all its children
+	 */
+	public MctsPlayer(int capacity) {
+		Preconditions.checkArgument(capacity > KalahaRules.MAX_HOUSES_PER_PLAYER,
+				"Node pool needs more than %s nodes, got: %s", KalahaRules.MAX_HOUSES_PER_PLAYER, capacity);
+		this.capacity = capacity;
+		this.firstChild = new int[capacity];
+		this.childCount = new byte[capacity];
+		this.move = new byte[capacity];
+		this.mover = new byte[capacity];
+		this.visits = new AtomicIntegerArray(capacity);
+		this.rewards = new AtomicIntegerArray(capacity);
+		this.expandState = new AtomicIntegerArray(capacity);
+	}
+
+	public double getExploration() {
+		return exploration;
+	}
+
+	/**
+	 * Sets UCT exploration constant, higher values spread playouts more evenly among moves
+	 */
+	public void setExploration(double exploration) {
+		this.exploration = exploration;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets number of workers growing the tree in parallel
+	 */
+	public synchronized void setThreads(int threads) {
+		Preconditions.checkArgument(threads > 0, "At least one search thread is required, got: " + threads);
+		if (threads != this.threads) {
+			shutdown();
+			this.threads = threads;
+			if (threads > 1) {
+				pool = new ForkJoinPool(threads);
+			}
+		}
+	}
+
+	/**
+	 * Stops worker pool, if any. Search falls back to single thread afterwards.
+	 */
+	public synchronized void shutdown() {
+		if (pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+		threads = 1;
+	}
+
+	/**
+	 * Sets seed of random playouts, for reproducible single thread searches
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Runs playouts from given position within given limits (node limit counts playouts, depth limit is ignored).
+	 * Given board is not modified.
+	 * @return most visited move
+	 */
+	public synchronized SearchResult search(KalahaBoard position, SearchLimits limits) {
+		Preconditions.checkArgument(!position.isGameFinished(), "Game has finished, nothing to search");
+		final long start = System.nanoTime();
+		resetTree();
+		final AtomicLong playouts = new AtomicLong();
+		final long maxNanos = limits.getMaxTimeMillis() == Long.MAX_VALUE ? Long.MAX_VALUE
+				: TimeUnit.MILLISECONDS.toNanos(limits.getMaxTimeMillis());
+
+		List<Worker> workers = new ArrayList<>();
+		for (int id = 0; id < threads; id++) {
+			workers.add(new Worker(position, seed + id * 0x9E3779B97F4A7C15L, playouts, limits.getMaxNodes(), start, maxNanos));
+		}
+		if (threads == 1) {
+			workers.get(0).run();
+		} else {
+			List<Future<?>> futures = new ArrayList<>();
+			for (Worker worker : workers) {
+				futures.add(pool.submit(worker));
+			}
+			for (Future<?> future : futures) {
+				try {
+					Uninterruptibles.getUninterruptibly(future);
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Playout worker failed", e.getCause());
+				}
+			}
+		}
+		seed += 0x632BE59BD9B4E019L;
+
+		final long elapsedNanos = System.nanoTime() - start;
+		if (childCount[0] == 0) {
+			// Limits ended the search before the root was expanded
+			KalahaMetrics.recordSearchLatency(elapsedNanos);
+			return new SearchResult(Integer.numberOfTrailingZeros(position.getLegalMoves()), 0, 0, playouts.get(),
+					elapsedNanos);
+		}
+		int bestChild = firstChild[0];
+		for (int child = firstChild[0]; child < firstChild[0] + childCount[0]; child++) {
+			if (visits.get(child) > visits.get(bestChild)) {
+				bestChild = child;
+			}
+		}
+		int maxDepth = 0;
+		for (Worker worker : workers) {
+			maxDepth = Math.max(maxDepth, worker.maxDepth);
+		}
+		final int bestVisits = Math.max(1, visits.get(bestChild));
+		KalahaMetrics.recordSearchLatency(elapsedNanos);
+		return new SearchResult(move[bestChild], rewards.get(bestChild) * 50 / bestVisits, maxDepth, playouts.get(),
+				elapsedNanos);
+	}
+
+	private void resetTree() {
+		final int used = Math.min(allocated.get(), capacity);
+		for (int node = 0; node < used; node++) {
+			visits.set(node, 0);
+			rewards.set(node, 0);
+			expandState.set(node, UNEXPANDED);
+		}
+		firstChild[0] = 0;
+		childCount[0] = 0;
+		allocated.set(1);
+	}
+
+	/**
+	 * Selection, expansion, random playout and backpropagation over a private copy of the position
+	 */
+	private class Worker implements Runnable {
+
+		private final KalahaBoard board;
+		private final AtomicLong playouts;
+		private final long maxPlayouts;
+		private final long startNanos;
+		private final long maxNanos;
+		private int[] path = new int[64];
+		private long[] undos = new long[256];
+		private long random;
+		private int maxDepth;
+
+		Worker(KalahaBoard position, long seed, AtomicLong playouts, long maxPlayouts, long startNanos, long maxNanos) {
+			this.board = position.copy();
+			this.random = seed == 0 ? 1 : seed;
+			this.playouts = playouts;
+			this.maxPlayouts = maxPlayouts;
+			this.startNanos = startNanos;
+			this.maxNanos = maxNanos;
+		}
+
+		@Override
+		public void run() {
+			for (long done = 0; ; done++) {
+				if ((done & LIMITS_CHECK_MASK) == 0 && System.nanoTime() - startNanos >= maxNanos) {
+					return;
+				}
+				if (playouts.incrementAndGet() > maxPlayouts) {
+					playouts.decrementAndGet();
+					return;
+				}
+				playout();
+			}
+		}
+
+		private void playout() {
+			int node = 0;
+			int depth = 0;
+			visits.incrementAndGet(0);
+
+			// Selection - visits are counted on the way down, rewards on the way back
+			while (expandState.get(node) == EXPANDED && childCount[node] > 0) {
+				node = selectChild(node);
+				visits.incrementAndGet(node);
+				push(depth++, node, board.makeMove(move[node]));
+			}
+			// Expansion
+			if (!board.isGameFinished() && expandState.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+				expand(node);
+				if (childCount[node] > 0) {
+					node = firstChild[node] + nextRandom(childCount[node]);
+					visits.incrementAndGet(node);
+					push(depth++, node, board.makeMove(move[node]));
+				}
+			}
+			maxDepth = Math.max(maxDepth, depth);
+
+			// Random playout
+			int plies = depth;
+			while (!board.isGameFinished()) {
+				push(plies++, -1, board.makeMove(board.getLegalMove(nextRandom(board.getLegalMovesCount()))));
+			}
+			final int winner = board.getWinningPlayer();
+			while (plies > depth) {
+				board.unmakeMove(undos[--plies]);
+			}
+
+			// Backpropagation
+			while (depth > 0) {
+				final int pathNode = path[--depth];
+				rewards.addAndGet(pathNode, winner < 0 ? 1 : winner == mover[pathNode] ? 2 : 0);
+				board.unmakeMove(undos[depth]);
+			}
+		}
+
+		private int selectChild(int node) {
+			final int first = firstChild[node];
+			final double logParentVisits = Math.log(Math.max(1, visits.get(node)));
+			int best = first;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (int child = first; child < first + childCount[node]; child++) {
+				final int childVisits = visits.get(child);
+				if (childVisits == 0) {
+					return child;
+				}
+				final double value = rewards.get(child) / (2.0 * childVisits)
+						+ exploration * Math.sqrt(logParentVisits / childVisits);
+				if (value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+
+		private void expand(int node) {
+			final int legalMoves = board.getLegalMoves();
+			final int count = Integer.bitCount(legalMoves);
+			final int first = allocated.getAndAdd(count);
+			if (first + count > capacity) {
+				// Pool exhausted, node stays a leaf and gets playouts only
+				childCount[node] = 0;
+				expandState.set(node, EXPANDED);
+				return;
+			}
+			final int player = board.getPlayerToMove();
+			int child = first;
+			for (int legal = legalMoves; legal != 0; legal &= legal - 1, child++) {
+				move[child] = (byte) Integer.numberOfTrailingZeros(legal);
+				mover[child] = (byte) player;
+			}
+			firstChild[node] = first;
+			childCount[node] = (byte) count;
+			expandState.set(node, EXPANDED);
+		}
+
+		private void push(int depth, int node, long undo) {
+			if (depth == undos.length) {
+				undos = Arrays.copyOf(undos, depth * 2);
+			}
+			if (node >= 0) {
+				if (depth == path.length) {
+					path = Arrays.copyOf(path, depth * 2);
+				}
+				path[depth] = node;
+			}
+			undos[depth] = undo;
+		}
+
+		/**
+		 * xorshift64* - allocation free and not shared between workers
+		 */
+		private int nextRandom(int bound) {
+			random ^= random >>> 12;
+			random ^= random << 25;
+			random ^= random >>> 27;
+			return (int) (((random * 0x2545F4914F6CDD1DL) >>> 33) * bound >>> 31);
+		}
+	}
+}
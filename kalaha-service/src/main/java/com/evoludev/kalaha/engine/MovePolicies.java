@@ -0,0 +1,97 @@
+package com.evoludev.kalaha.engine;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.google.common.base.Preconditions;
+
+/**
+ * Standard {@link MovePolicy} implementations
+ */
+public final class MovePolicies {
+
+	/** Transposition table of search policies, kept small as simulations run one search per thread */
+	private static final int SEARCH_TABLE_SIZE_MB = 4;
+
+	private MovePolicies() {
+	}
+
+	/**
+	 * @return policy playing uniformly random legal moves
+	 */
+	public static MovePolicy random(long seed) {
+		final SplittableRandom random = new SplittableRandom(seed);
+		return board -> board.getLegalMove(random.nextInt(board.getLegalMovesCount()));
+	}
+
+	/**
+	 * @return policy maximizing own store after the move, preferring extra turns, lowest house on ties
+	 */
+	public static MovePolicy greedy() {
+		return board -> {
+			final int player = board.getPlayerToMove();
+			final int opponent = board.getNextPlayer(player);
+			int bestMove = -1;
+			int bestValue = Integer.MIN_VALUE;
+			for (int legal = board.getLegalMoves(); legal != 0; legal &= legal - 1) {
+				final int move = Integer.numberOfTrailingZeros(legal);
+				final long undo = board.makeMove(move);
+				// Store difference counts twice, so an extra turn only breaks ties
+				int value = 2 * (board.getSeeds(board.getStorePit(player)) - board.getSeeds(board.getStorePit(opponent)));
+				if (!board.isGameFinished() && board.getPlayerToMove() == player) {
+					value++;
+				}
+				board.unmakeMove(undo);
+				if (value > bestValue) {
+					bestValue = value;
+					bestMove = move;
+				}
+			}
+			return bestMove;
+		};
+	}
+
+	/**
+	 * @return policy playing best move of {@link AlphaBetaSearch} within given limits
+	 */
+	public static MovePolicy alphaBeta(SearchLimits limits) {
+		final AlphaBetaSearch search = new AlphaBetaSearch(new TranspositionTable(SEARCH_TABLE_SIZE_MB));
+		return board -> search.search(board, limits).getBestMove();
+	}
+
+	/**
+	 * @return policy playing most visited move of {@link MctsPlayer} within given limits
+	 */
+	public static MovePolicy mcts(SearchLimits limits, long seed) {
+		final MctsPlayer player = new MctsPlayer(1 << 16);
+		player.setSeed(seed);
+		return board -> player.search(board, limits).getBestMove();
+	}
+
+	/**
+	 * Parses policy specification: <i>random</i>, <i>greedy</i>, <i>alphabeta:&lt;depth&gt;</i>
+	 * or <i>mcts:&lt;playouts&gt;</i>
+	 * @return factory of independent policy instances, each seeded with the given seed plus its instance number
+	 */
+	public static Supplier<MovePolicy> parse(String spec, long seed) {
+		final String name = spec.contains(":") ? spec.substring(0, spec.indexOf(':')) : spec;
+		final String arg = spec.contains(":") ? spec.substring(spec.indexOf(':') + 1) : null;
+		final AtomicLong instances = new AtomicLong();
+		switch (name) {
+		case "random":
+			return () -> random(seed + instances.getAndIncrement());
+		case "greedy":
+			return MovePolicies::greedy;
+		case "alphabeta":
+			final SearchLimits depth = SearchLimits.depth(Integer.parseInt(Preconditions.checkNotNull(arg, "Missing depth: " + spec)));
+			return () -> alphaBeta(depth);
+		case "mcts":
+			final SearchLimits playouts = SearchLimits.nodes(Long.parseLong(Preconditions.checkNotNull(arg, "Missing playouts: " + spec)));
+			return () -> mcts(playouts, seed + instances.getAndIncrement());
+		default:
+			throw new IllegalArgumentException("Unknown move policy: " + spec + ". Valid policies are: [random, greedy, alphabeta:<depth>, mcts:<playouts>]");
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.evoludev.kalaha.engine;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+
+/**
+ * Strategy choosing moves for the player to move. Implementations may keep state between moves
+ * and are not expected to be thread safe.
+ */
+public interface MovePolicy {
+
+	/**
+	 * @param board position of an unfinished game, left unchanged
+	 * @return legal house number for the player to move
+	 */
+	int chooseMove(KalahaBoard board);
+}
@@ -0,0 +1,136 @@
+package com.evoludev.kalaha.engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.google.common.base.Preconditions;
+
+/**
+ * Searched scores of every move in opening positions, as built by {@link OpeningBookBuilder}. Positions are
+ * found by binary search over their Zobrist hashes in a read-only {@link MappedByteBuffer}, so a lookup
+ * takes a few dozen reads of the page cache and allocates nothing.
+ * <p>
+ * File layout: magic, houses per player, initial seeds, number of positions, search depth, then one entry
+ * per position sorted by hash: hash followed by the score of every house as short, {@link #NO_SCORE} for
+ * illegal moves. Scores are store differences from the point of view of the player to move, as
+ * {@link SearchResult#getScore()}.
+ */
+public final class OpeningBook {
+
+	static final long MAGIC = 0x4B4C48424F4F4B31L; // "KLHBOOK1"
+	static final int HEADER_BYTES = Long.BYTES + 4 * Integer.BYTES;
+	public static final int NO_SCORE = Short.MIN_VALUE;
+
+	private final ByteBuffer buffer;
+	private final KalahaRules rules;
+	private final int positions;
+	private final int depth;
+	private final int entryBytes;
+
+	OpeningBook(ByteBuffer buffer) {
+		this.buffer = buffer;
+		Preconditions.checkArgument(buffer.getLong(0) == MAGIC, "Not an opening book");
+		this.rules = KalahaRules.of(buffer.getInt(Long.BYTES), buffer.getInt(Long.BYTES + Integer.BYTES));
+		this.positions = buffer.getInt(Long.BYTES + 2 * Integer.BYTES);
+		this.depth = buffer.getInt(Long.BYTES + 3 * Integer.BYTES);
+		this.entryBytes = getEntryBytes(rules);
+		Preconditions.checkArgument(buffer.capacity() == HEADER_BYTES + (long) positions * entryBytes, "Opening book is truncated");
+	}
+
+	/**
+	 * Maps given book file read-only
+	 */
+	public static OpeningBook open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Preconditions.checkArgument(channel.size() <= Integer.MAX_VALUE, "Opening book over 2GB: " + file);
+			return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	static int getEntryBytes(KalahaRules rules) {
+		return Long.BYTES + rules.getHousesPerPlayer() * Short.BYTES;
+	}
+
+	public KalahaRules getRules() {
+		return rules;
+	}
+
+	/**
+	 * @return number of positions in the book
+	 */
+	public int getPositions() {
+		return positions;
+	}
+
+	/**
+	 * @return depth every book position was searched to
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return entry offset of the position on given board, -1 if it is not in the book
+	 */
+	private int find(KalahaBoard board) {
+		if (!board.getRules().equals(rules)) {
+			return -1;
+		}
+		final long hash = board.getHash();
+		int low = 0;
+		int high = positions - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			final int offset = HEADER_BYTES + middle * entryBytes;
+			final long entryHash = buffer.getLong(offset);
+			if (entryHash < hash) {
+				low = middle + 1;
+			} else if (entryHash > hash) {
+				high = middle - 1;
+			} else {
+				return offset;
+			}
+		}
+		return -1;
+	}
+
+	public boolean contains(KalahaBoard board) {
+		return find(board) >= 0;
+	}
+
+	/**
+	 * @return score of sowing from given house of the player to move, {@link #NO_SCORE} if the position
+	 * is not in the book or the move is illegal
+	 */
+	public int getScore(KalahaBoard board, int houseNum) {
+		final int offset = find(board);
+		return offset < 0 ? NO_SCORE : buffer.getShort(offset + Long.BYTES + houseNum * Short.BYTES);
+	}
+
+	/**
+	 * @return best scored legal house of the player to move, -1 if the position is not in the book
+	 */
+	public int getBestMove(KalahaBoard board) {
+		final int offset = find(board);
+		if (offset < 0) {
+			return -1;
+		}
+		int best = -1;
+		int bestScore = NO_SCORE;
+		for (int legal = board.getLegalMoves(); legal != 0; legal &= legal - 1) {
+			final int house = Integer.numberOfTrailingZeros(legal);
+			final int score = buffer.getShort(offset + Long.BYTES + house * Short.BYTES);
+			if (score > bestScore) {
+				best = house;
+				bestScore = score;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,130 @@
+package com.evoludev.kalaha.engine;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import com.evoludev.kalaha.game.GamePosition;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.google.common.base.Preconditions;
+
+/**
+ * Builds an {@link OpeningBook}: walks all lines from the initial position up to given number of plies
+ * and searches every move of every position reached to given depth, positions in parallel.
+ * Transpositions are searched once.
+ */
+public final class OpeningBookBuilder {
+
+	/** Per thread searches never share a table, small tables suffice for book depths */
+	private static final int TABLE_SIZE_MB = 4;
+
+	private final int depth;
+	private final ThreadLocal<AlphaBetaSearch> searches = ThreadLocal.withInitial(
+			() -> new AlphaBetaSearch(new TranspositionTable(TABLE_SIZE_MB)));
+
+	private OpeningBookBuilder(int depth) {
+		this.depth = depth;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: OpeningBookBuilder <output file> <plies> <search depth> [houses per player] [initial seeds]");
+			System.exit(1);
+		}
+		KalahaRules rules = KalahaRules.of(args.length > 3 ? Integer.parseInt(args[3]) : KalahaRules.DEFAULT.getHousesPerPlayer(),
+				args.length > 4 ? Integer.parseInt(args[4]) : KalahaRules.DEFAULT.getInitialSeeds());
+		long start = System.nanoTime();
+		int positions = build(Paths.get(args[0]), rules, Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		System.out.println("Built " + args[0] + " with " + positions + " positions in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+	}
+
+	/**
+	 * Searches all positions up to given plies from the initial position of given rules and writes them to given file
+	 * @param depth search depth of every move, counting the move itself
+	 * @return number of positions in the book
+	 */
+	public static int build(Path file, KalahaRules rules, int plies, int depth) throws IOException {
+		Preconditions.checkArgument(plies >= 0, "Plies must not be negative, got: %s", plies);
+		Preconditions.checkArgument(depth > 0 && depth <= SearchLimits.MAX_DEPTH, "Depth must be between 1 and %s, got: %s",
+				SearchLimits.MAX_DEPTH, depth);
+		final GamePosition[] positions = collectPositions(rules, plies);
+		Arrays.sort(positions, (first, second) -> Long.compare(first.getHash(), second.getHash()));
+		final int entryBytes = OpeningBook.getEntryBytes(rules);
+		final long size = OpeningBook.HEADER_BYTES + (long) positions.length * entryBytes;
+		Preconditions.checkArgument(size <= Integer.MAX_VALUE, "Opening book would be over 2GB: %s positions", positions.length);
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putLong(0, OpeningBook.MAGIC);
+			buffer.putInt(Long.BYTES, rules.getHousesPerPlayer());
+			buffer.putInt(Long.BYTES + Integer.BYTES, rules.getInitialSeeds());
+			buffer.putInt(Long.BYTES + 2 * Integer.BYTES, positions.length);
+			buffer.putInt(Long.BYTES + 3 * Integer.BYTES, depth);
+			OpeningBookBuilder builder = new OpeningBookBuilder(depth);
+			IntStream.range(0, positions.length).parallel().forEach(idx -> {
+				final int offset = OpeningBook.HEADER_BYTES + idx * entryBytes;
+				buffer.putLong(offset, positions[idx].getHash());
+				for (int house = 0; house < rules.getHousesPerPlayer(); house++) {
+					buffer.putShort(offset + Long.BYTES + house * Short.BYTES, (short) builder.score(positions[idx], house));
+				}
+			});
+			buffer.force();
+		}
+		return positions.length;
+	}
+
+	/**
+	 * @return unfinished positions reached by all lines of up to given plies, each once
+	 */
+	private static GamePosition[] collectPositions(KalahaRules rules, int plies) {
+		final Map<Long, GamePosition> seen = new HashMap<>();
+		List<GamePosition> level = new ArrayList<>();
+		level.add(GamePosition.initial(rules));
+		seen.put(level.get(0).getHash(), level.get(0));
+		for (int ply = 0; ply < plies; ply++) {
+			final List<GamePosition> next = new ArrayList<>();
+			for (GamePosition position : level) {
+				for (int legal = position.getLegalMoves(); legal != 0; legal &= legal - 1) {
+					final GamePosition child = position.play(Integer.numberOfTrailingZeros(legal));
+					if (!child.isGameFinished() && seen.putIfAbsent(child.getHash(), child) == null) {
+						next.add(child);
+					}
+				}
+			}
+			level = next;
+		}
+		return seen.values().toArray(new GamePosition[seen.size()]);
+	}
+
+	/**
+	 * @return score of given move for the player to move, {@link OpeningBook#NO_SCORE} if it is illegal
+	 */
+	private int score(GamePosition position, int house) {
+		if ((position.getLegalMoves() & 1 << house) == 0) {
+			return OpeningBook.NO_SCORE;
+		}
+		final GamePosition child = position.play(house);
+		final int mover = position.getPlayerToMove();
+		final int storeDiff = child.getSeeds(child.getRules().getHousesPerPlayer()) - child.getSeeds(child.getPitsCount() - 1);
+		final int score;
+		if (child.isGameFinished() || depth == 1) {
+			score = mover == 0 ? storeDiff : -storeDiff;
+		} else {
+			final int childScore = searches.get().search(child.toBoard(), SearchLimits.depth(depth - 1)).getScore();
+			score = child.getPlayerToMove() == mover ? childScore : -childScore;
+		}
+		return Math.max(Short.MIN_VALUE + 1, Math.min(Short.MAX_VALUE, score));
+	}
+}
@@ -0,0 +1,370 @@
+package com.evoludev.kalaha.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.google.common.base.Preconditions;
+
+/**
+ * Move path enumeration to a fixed depth, as perft in chess engines: plays every legal move sequence
+ * of given length and counts what happens on the way. Counts of known positions are regression tests
+ * of the move generator, nodes per second the throughput figure of the rules engine.
+ * <p>
+ * With more than one thread subtrees are split into fork-join tasks down to {@value #SPLIT_DEPTH} plies left,
+ * each on its own board copy. With a subtree table, counts of a position reached again by a different
+ * move order (or an extra turn) are looked up by position hash instead of being enumerated again.
+ * Both give the same counts as a single threaded full enumeration.
+ * <p>
+ * Usage: <i>Perft [-threads N] [-houses N] [-seeds N] [-table MB] [-state board state] &lt;depth&gt;</i>
+ */
+public class Perft {
+
+	/** Subtrees with fewer plies left are enumerated by the task that reaches them */
+	private static final int SPLIT_DEPTH = 6;
+	/** Subtrees with fewer plies left are cheaper to enumerate than to look up */
+	private static final int MIN_TABLE_DEPTH = 2;
+
+	private int threads = 1;
+	private ForkJoinPool pool;
+	private SubtreeTable table;
+
+	public static void main(String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int houses = KalahaRules.DEFAULT.getHousesPerPlayer();
+		int seeds = KalahaRules.DEFAULT.getInitialSeeds();
+		int tableSizeMb = 0;
+		String state = null;
+		int arg = 0;
+		for (; arg + 1 < args.length && args[arg].startsWith("-"); arg += 2) {
+			switch (args[arg]) {
+			case "-threads":
+				threads = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-houses":
+				houses = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-seeds":
+				seeds = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-table":
+				tableSizeMb = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-state":
+				state = args[arg + 1];
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + args[arg]);
+			}
+		}
+		if (args.length - arg != 1) {
+			System.err.println("Usage: Perft [-threads N] [-houses N] [-seeds N] [-table MB] [-state board state] <depth>");
+			System.exit(1);
+		}
+		KalahaBoard board = new KalahaBoard(KalahaRules.of(houses, seeds));
+		if (state != null) {
+			board.setBoardState(state);
+		}
+		Perft perft = new Perft();
+		perft.setThreads(threads);
+		perft.setTableSize(tableSizeMb);
+		try {
+			for (int depth = 1; depth <= Integer.parseInt(args[arg]); depth++) {
+				System.out.println(perft.run(board, depth));
+			}
+		} finally {
+			perft.shutdown();
+		}
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Sets number of threads enumerating in parallel
+	 */
+	public synchronized void setThreads(int threads) {
+		Preconditions.checkArgument(threads > 0, "At least one perft thread is required, got: " + threads);
+		if (threads != this.threads) {
+			shutdown();
+			this.threads = threads;
+			if (threads > 1) {
+				pool = new ForkJoinPool(threads);
+			}
+		}
+	}
+
+	/**
+	 * Stops worker pool, if any. Enumeration falls back to single thread afterwards.
+	 */
+	public synchronized void shutdown() {
+		if (pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+		threads = 1;
+	}
+
+	/**
+	 * Sets size of the table of subtree counts, 0 to enumerate every move path
+	 */
+	public synchronized void setTableSize(int sizeMb) {
+		Preconditions.checkArgument(sizeMb >= 0 && sizeMb <= 4096, "Table size must be between 0 and 4096 MB, got: " + sizeMb);
+		table = sizeMb == 0 ? null : new SubtreeTable(sizeMb);
+	}
+
+	/**
+	 * Counts move paths of given length from given position, which is not modified
+	 */
+	public synchronized Result run(KalahaBoard position, int depth) {
+		Preconditions.checkArgument(depth >= 0, "Depth must not be negative, got: " + depth);
+		final long start = System.nanoTime();
+		final Counts counts;
+		if (pool == null) {
+			counts = new Counts();
+			count(position.copy(), depth, counts);
+		} else {
+			counts = pool.invoke(new PerftTask(position.copy(), depth));
+		}
+		return new Result(depth, counts, System.nanoTime() - start);
+	}
+
+	private void count(KalahaBoard board, int depth, Counts counts) {
+		if (depth == 0) {
+			counts.leaves++;
+			return;
+		}
+		final long hash = board.getHash();
+		final boolean cached = table != null && depth >= MIN_TABLE_DEPTH;
+		if (cached && table.probe(hash, depth, counts)) {
+			return;
+		}
+		final long nodes = counts.nodes;
+		final long leaves = counts.leaves;
+		final long gameEnds = counts.gameEnds;
+		final long captures = counts.captures;
+		final long extraTurns = counts.extraTurns;
+		for (int legal = board.getLegalMoves(); legal != 0; legal &= legal - 1) {
+			final long undo = board.makeMove(Integer.numberOfTrailingZeros(legal));
+			counts.countMove(undo, board);
+			if (depth == 1) {
+				counts.leaves++;
+			} else if (!KalahaBoard.isGameEnd(undo)) {
+				count(board, depth - 1, counts);
+			}
+			board.unmakeMove(undo);
+		}
+		if (cached) {
+			table.store(hash, depth, counts.nodes - nodes, counts.leaves - leaves, counts.gameEnds - gameEnds,
+					counts.captures - captures, counts.extraTurns - extraTurns);
+		}
+	}
+
+	/**
+	 * Subtree on a private board, split into child tasks while deep enough
+	 */
+	private class PerftTask extends RecursiveTask<Counts> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final KalahaBoard board;
+		private final int depth;
+
+		PerftTask(KalahaBoard board, int depth) {
+			this.board = board;
+			this.depth = depth;
+		}
+
+		@Override
+		protected Counts compute() {
+			final Counts counts = new Counts();
+			if (depth < SPLIT_DEPTH) {
+				count(board, depth, counts);
+				return counts;
+			}
+			final long hash = board.getHash();
+			if (table != null && table.probe(hash, depth, counts)) {
+				return counts;
+			}
+			final List<PerftTask> children = new ArrayList<>();
+			for (int legal = board.getLegalMoves(); legal != 0; legal &= legal - 1) {
+				final KalahaBoard child = board.copy();
+				final long undo = child.makeMove(Integer.numberOfTrailingZeros(legal));
+				counts.countMove(undo, child);
+				if (!KalahaBoard.isGameEnd(undo)) {
+					children.add(new PerftTask(child, depth - 1));
+				}
+			}
+			for (PerftTask child : invokeAll(children)) {
+				counts.add(child.join());
+			}
+			if (table != null) {
+				table.store(hash, depth, counts.nodes, counts.leaves, counts.gameEnds, counts.captures, counts.extraTurns);
+			}
+			return counts;
+		}
+	}
+
+	private static final class Counts {
+
+		private long nodes;
+		private long leaves;
+		private long gameEnds;
+		private long captures;
+		private long extraTurns;
+
+		void countMove(long undo, KalahaBoard board) {
+			nodes++;
+			if (KalahaBoard.isCapture(undo)) {
+				captures++;
+			}
+			if (KalahaBoard.isGameEnd(undo)) {
+				gameEnds++;
+			} else if (board.getPlayerToMove() == KalahaBoard.getUndoPlayer(undo)) {
+				extraTurns++;
+			}
+		}
+
+		void add(Counts other) {
+			nodes += other.nodes;
+			leaves += other.leaves;
+			gameEnds += other.gameEnds;
+			captures += other.captures;
+			extraTurns += other.extraTurns;
+		}
+	}
+
+	/**
+	 * Lock-free table of subtree counts keyed by position hash and depth, one always-replace slot per index.
+	 * The key is stored XOR-ed with all counts, so a torn write by a concurrent writer fails verification on probe.
+	 */
+	private static final class SubtreeTable {
+
+		private static final int LONGS_PER_ENTRY = 6;
+
+		private final long[] entries;
+		private final int indexMask;
+
+		SubtreeTable(int sizeMb) {
+			final long slots = Long.highestOneBit(sizeMb * 1024L * 1024L / (LONGS_PER_ENTRY * Long.BYTES));
+			this.entries = new long[(int) slots * LONGS_PER_ENTRY];
+			this.indexMask = (int) slots - 1;
+		}
+
+		boolean probe(long hash, int depth, Counts counts) {
+			final long key = key(hash, depth);
+			final int idx = index(key);
+			final long nodes = entries[idx + 1];
+			final long leaves = entries[idx + 2];
+			final long gameEnds = entries[idx + 3];
+			final long captures = entries[idx + 4];
+			final long extraTurns = entries[idx + 5];
+			if (nodes == 0 || (entries[idx] ^ nodes ^ leaves ^ gameEnds ^ captures ^ extraTurns) != key) {
+				return false;
+			}
+			counts.nodes += nodes;
+			counts.leaves += leaves;
+			counts.gameEnds += gameEnds;
+			counts.captures += captures;
+			counts.extraTurns += extraTurns;
+			return true;
+		}
+
+		void store(long hash, int depth, long nodes, long leaves, long gameEnds, long captures, long extraTurns) {
+			final long key = key(hash, depth);
+			final int idx = index(key);
+			entries[idx] = key ^ nodes ^ leaves ^ gameEnds ^ captures ^ extraTurns;
+			entries[idx + 1] = nodes;
+			entries[idx + 2] = leaves;
+			entries[idx + 3] = gameEnds;
+			entries[idx + 4] = captures;
+			entries[idx + 5] = extraTurns;
+		}
+
+		private static long key(long hash, int depth) {
+			return hash ^ depth * 0x9E3779B97F4A7C15L;
+		}
+
+		private int index(long key) {
+			return ((int) (key >>> 32 ^ key) & indexMask) * LONGS_PER_ENTRY;
+		}
+	}
+
+	/**
+	 * Counts of one enumeration. Moves of all plies are counted, leaves are positions after exactly
+	 * <i>depth</i> moves, lines ending the game earlier have no leaf.
+	 */
+	public static final class Result {
+
+		private final int depth;
+		private final long nodes;
+		private final long leaves;
+		private final long gameEnds;
+		private final long captures;
+		private final long extraTurns;
+		private final long elapsedNanos;
+
+		Result(int depth, Counts counts, long elapsedNanos) {
+			this.depth = depth;
+			this.nodes = counts.nodes;
+			this.leaves = counts.leaves;
+			this.gameEnds = counts.gameEnds;
+			this.captures = counts.captures;
+			this.extraTurns = counts.extraTurns;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * @return moves made on all plies
+		 */
+		public long getNodes() {
+			return nodes;
+		}
+
+		public long getLeaves() {
+			return leaves;
+		}
+
+		/**
+		 * @return moves ending the game
+		 */
+		public long getGameEnds() {
+			return gameEnds;
+		}
+
+		public long getCaptures() {
+			return captures;
+		}
+
+		/**
+		 * @return moves ending in own store, game ending moves excluded
+		 */
+		public long getExtraTurns() {
+			return extraTurns;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public long getNodesPerSecond() {
+			return elapsedNanos == 0 ? 0 : (long) (nodes * 1e9 / elapsedNanos);
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "depth %d: leaves %d, nodes %d, game ends %d, captures %d, extra turns %d,"
+					+ " %.1f ms, %d nodes/s", depth, leaves, nodes, gameEnds, captures, extraTurns, elapsedNanos / 1e6,
+					getNodesPerSecond());
+		}
+	}
+}
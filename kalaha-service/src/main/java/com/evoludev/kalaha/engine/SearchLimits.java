@@ -0,0 +1,63 @@
+package com.evoludev.kalaha.engine;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Budget of a single search. Search stops at whichever limit is reached first.
+ */
+public final class SearchLimits {
+
+	public static final int MAX_DEPTH = 64;
+
+	private final int maxDepth;
+	private final long maxNodes;
+	private final long maxTimeMillis;
+
+	public SearchLimits(int maxDepth, long maxNodes, long maxTimeMillis) {
+		Preconditions.checkArgument(maxDepth > 0 && maxDepth <= MAX_DEPTH, "Depth must be between 1 and " + MAX_DEPTH + ", got: " + maxDepth);
+		Preconditions.checkArgument(maxNodes > 0, "Node limit must be positive, got: " + maxNodes);
+		Preconditions.checkArgument(maxTimeMillis > 0, "Time limit must be positive, got: " + maxTimeMillis);
+		this.maxDepth = maxDepth;
+		this.maxNodes = maxNodes;
+		this.maxTimeMillis = maxTimeMillis;
+	}
+
+	/**
+	 * @return limits searching for given time
+	 */
+	public static SearchLimits time(long maxTimeMillis) {
+		return new SearchLimits(MAX_DEPTH, Long.MAX_VALUE, maxTimeMillis);
+	}
+
+	/**
+	 * @return limits searching given number of nodes
+	 */
+	public static SearchLimits nodes(long maxNodes) {
+		return new SearchLimits(MAX_DEPTH, maxNodes, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @return limits searching to given depth
+	 */
+	public static SearchLimits depth(int maxDepth) {
+		return new SearchLimits(maxDepth, Long.MAX_VALUE, Long.MAX_VALUE);
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public long getMaxNodes() {
+		return maxNodes;
+	}
+
+	public long getMaxTimeMillis() {
+		return maxTimeMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "depth=" + maxDepth + ", nodes=" + (maxNodes == Long.MAX_VALUE ? "inf" : maxNodes)
+				+ ", time=" + (maxTimeMillis == Long.MAX_VALUE ? "inf" : maxTimeMillis + "ms");
+	}
+}
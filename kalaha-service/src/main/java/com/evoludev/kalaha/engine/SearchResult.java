@@ -0,0 +1,62 @@
+package com.evoludev.kalaha.engine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a search: best house number with its score and search statistics
+ */
+public final class SearchResult {
+
+	private final int bestMove;
+	private final int score;
+	private final int depth;
+	private final long nodes;
+	private final long elapsedNanos;
+
+	public SearchResult(int bestMove, int score, int depth, long nodes, long elapsedNanos) {
+		this.bestMove = bestMove;
+		this.score = score;
+		this.depth = depth;
+		this.nodes = nodes;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * @return house number to sow from
+	 */
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	/**
+	 * @return expected store difference for the player to move (own store minus opponent store)
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * @return deepest fully completed iteration
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public long getNodesPerSecond() {
+		return elapsedNanos == 0 ? 0 : (long) (nodes * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+	}
+
+	@Override
+	public String toString() {
+		return "move=" + bestMove + " score=" + score + " depth=" + depth + " nodes=" + nodes
+				+ " time=" + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + "ms nps=" + getNodesPerSecond();
+	}
+}
@@ -0,0 +1,131 @@
+package com.evoludev.kalaha.engine;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Fixed-size, lock-free transposition table keyed by {@link com.evoludev.kalaha.game.KalahaBoard#getHash()}.
+ * Each entry is two longs, the key stored XOR-ed with the data, so a torn write by a concurrent
+ * writer fails verification on probe instead of returning a wrong entry. Entries are grouped
+ * in buckets of two: a depth-preferred slot, replaced only by deeper searches or entries from an
+ * older search, and an always-replace slot.
+ */
+public final class TranspositionTable {
+
+	public static final int BOUND_EXACT = 0;
+	public static final int BOUND_LOWER = 1;
+	public static final int BOUND_UPPER = 2;
+
+	/** Returned by {@link #probe(long)} when position is not in the table */
+	public static final long NO_ENTRY = 0;
+
+	/* Entry data layout: move, bound, valid flag, depth, score and search generation */
+	private static final long MOVE_MASK = 0x1F;
+	private static final int BOUND_SHIFT = 5;
+	private static final long VALID_FLAG = 1L << 7;
+	private static final int DEPTH_SHIFT = 8;
+	private static final int SCORE_SHIFT = 16;
+	private static final int GENERATION_SHIFT = 48;
+	private static final int MAX_SCORE = (1 << 23) - 1;
+
+	private static final int LONGS_PER_BUCKET = 4;
+
+	private final long[] table;
+	private final int bucketMask;
+	private volatile int generation;
+
+	/**
+	 * @param sizeMb table size in megabytes, rounded down to a power of two number of buckets
+	 */
+	public TranspositionTable(int sizeMb) {
+		Preconditions.checkArgument(sizeMb > 0 && sizeMb <= 4096, "Table size must be between 1 and 4096 MB, got: " + sizeMb);
+		long buckets = Long.highestOneBit(sizeMb * 1024L * 1024L / (LONGS_PER_BUCKET * Long.BYTES));
+		this.table = new long[(int) buckets * LONGS_PER_BUCKET];
+		this.bucketMask = (int) buckets - 1;
+	}
+
+	/**
+	 * Starts a new search generation, entries of older generations get replaced first
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & 0xFF;
+	}
+
+	public void clear() {
+		Arrays.fill(table, 0);
+	}
+
+	/**
+	 * @return entry data of given position, or {@link #NO_ENTRY}
+	 */
+	public long probe(long hash) {
+		final int idx = bucketIndex(hash);
+		for (int slot = idx; slot < idx + LONGS_PER_BUCKET; slot += 2) {
+			final long data = table[slot + 1];
+			if ((table[slot] ^ data) == hash && (data & VALID_FLAG) != 0) {
+				return data;
+			}
+		}
+		return NO_ENTRY;
+	}
+
+	/**
+	 * Stores search result of given position
+	 * @param hash position hash
+	 * @param move best (or refuting) house number
+	 * @param depth remaining search depth the score was computed with
+	 * @param score score from the point of view of the player to move
+	 * @param bound one of BOUND_EXACT, BOUND_LOWER or BOUND_UPPER
+	 */
+	public void store(long hash, int move, int depth, int score, int bound) {
+		final int gen = generation;
+		final long data = (move & MOVE_MASK) | (long) bound << BOUND_SHIFT | VALID_FLAG
+				| (long) Math.min(depth, 0xFF) << DEPTH_SHIFT
+				| ((long) Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score)) & 0xFFFFFFFFL) << SCORE_SHIFT
+				| (long) gen << GENERATION_SHIFT;
+		final int idx = bucketIndex(hash);
+		final long preferred = table[idx + 1];
+		final boolean samePosition = (table[idx] ^ preferred) == hash;
+		int slot = idx + 2;
+		if (samePosition || (preferred & VALID_FLAG) == 0 || getGeneration(preferred) != gen
+				|| getDepth(preferred) <= depth) {
+			slot = idx;
+		}
+		table[slot] = hash ^ data;
+		table[slot + 1] = data;
+	}
+
+	private int bucketIndex(long hash) {
+		return ((int) (hash ^ (hash >>> 32)) & bucketMask) * LONGS_PER_BUCKET;
+	}
+
+	/**
+	 * @return number of entries the table can hold
+	 */
+	public int getCapacity() {
+		return table.length / 2;
+	}
+
+	/* Entry data accessors */
+
+	public static int getMove(long data) {
+		return (int) (data & MOVE_MASK);
+	}
+
+	public static int getBound(long data) {
+		return (int) (data >>> BOUND_SHIFT) & 0x3;
+	}
+
+	public static int getDepth(long data) {
+		return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+	}
+
+	public static int getScore(long data) {
+		return (int) (data >>> SCORE_SHIFT);
+	}
+
+	private static int getGeneration(long data) {
+		return (int) (data >>> GENERATION_SHIFT) & 0xFF;
+	}
+}
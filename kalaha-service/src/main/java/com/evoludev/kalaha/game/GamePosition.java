@@ -0,0 +1,148 @@
+package com.evoludev.kalaha.game;
+
+import java.util.Arrays;
+
+/**
+ * Immutable position: seeds of all pits in pit order and player to move. A position is never changed after
+ * creation, so any number of threads can read it without locks and positions can be handed to other threads
+ * as they are. Moving creates a new position, the pit array is copied once per move.
+ * <p>
+ * {@link KalahaGame#getPosition()} publishes the latest position of a game.
+ */
+public final class GamePosition {
+
+	private final KalahaRules rules;
+	private final int[] pits;
+	private final int playerToMove;
+	private final int legalMoves;
+	private final long hash;
+
+	private GamePosition(KalahaBoard board) {
+		this.rules = board.getRules();
+		this.pits = new int[board.getPitsCount()];
+		for (int pit = 0; pit < pits.length; pit++) {
+			pits[pit] = board.getSeeds(pit);
+		}
+		this.playerToMove = board.getPlayerToMove();
+		this.legalMoves = board.getLegalMoves();
+		this.hash = board.getHash();
+	}
+
+	/**
+	 * @return position on given board
+	 */
+	public static GamePosition of(KalahaBoard board) {
+		return new GamePosition(board);
+	}
+
+	/**
+	 * @return initial position of given rules
+	 */
+	public static GamePosition initial(KalahaRules rules) {
+		return of(new KalahaBoard(rules));
+	}
+
+	/**
+	 * @return position after the player to move sows from given house, this position stays unchanged.
+	 * Deep searches should rather {@link #applyTo(KalahaBoard)} a board of their own and make moves on it.
+	 * @throws {@link IllegalStateException} - when the game has ended
+	 * @throws {@link IllegalArgumentException} - in case houseNumber is invalid (out-of-range, or empty)
+	 */
+	public GamePosition play(int houseNum) {
+		final KalahaBoard board = toBoard();
+		board.makeMove(houseNum);
+		return of(board);
+	}
+
+	/**
+	 * Sets up given board with this position
+	 * @return given board
+	 */
+	public KalahaBoard applyTo(KalahaBoard board) {
+		board.setPlayerToMove(playerToMove);
+		for (int pit = 0; pit < pits.length; pit++) {
+			board.setSeeds(pit, pits[pit]);
+		}
+		return board;
+	}
+
+	/**
+	 * @return new board set up with this position
+	 */
+	public KalahaBoard toBoard() {
+		return applyTo(new KalahaBoard(rules));
+	}
+
+	public KalahaRules getRules() {
+		return rules;
+	}
+
+	public int getPitsCount() {
+		return pits.length;
+	}
+
+	public int getSeeds(int pit) {
+		return pits[pit];
+	}
+
+	public int getPlayerToMove() {
+		return playerToMove;
+	}
+
+	/**
+	 * @return bitmask of house numbers the player to move can sow from (bit N for house N), 0 if game has finished
+	 */
+	public int getLegalMoves() {
+		return legalMoves;
+	}
+
+	public boolean isGameFinished() {
+		return legalMoves == 0;
+	}
+
+	/**
+	 * @return index of player with most seeds in store, or -1 if there is a draw
+	 */
+	public int getWinningPlayer() {
+		final int diff = pits[rules.getHousesPerPlayer()] - pits[pits.length - 1];
+		return diff > 0 ? 0 : diff < 0 ? 1 : -1;
+	}
+
+	/**
+	 * @return Zobrist hash of the position, same as {@link KalahaBoard#getHash()}
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	/**
+	 * @return position in {@link KalahaBoard#getBoardState()} format
+	 */
+	public String getBoardState() {
+		StringBuilder str = new StringBuilder(pits.length * 3 + 1).append(playerToMove);
+		for (int pit = 0; pit < pits.length; pit++) {
+			str.append('|').append(pits[pit]);
+		}
+		return str.toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof GamePosition)) {
+			return false;
+		}
+		GamePosition other = (GamePosition) obj;
+		return hash == other.hash && playerToMove == other.playerToMove && rules.equals(other.rules)
+				&& Arrays.equals(pits, other.pits);
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(hash);
+	}
+
+	@Override
+	public String toString() {
+		return getBoardState();
+	}
+}
@@ -8,8 +8,8 @@ public class House extends Pit {
 	
 	private House oppositeHouse;
 
-	public House(int index, int seeds) {
-		super(index, seeds);
+	public House(KalahaBoard board, int ordinal) {
+		super(board, ordinal);
 	}
 
 	/**
@@ -0,0 +1,552 @@
+package com.evoludev.kalaha.game;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Core Kalaha engine. Keeps the whole board in one flat <i>int[]</i>, indexed the same way as
+ * {@link Pit#getOrdinal()}: each player owns a contiguous run of houses followed by his store.
+ * Next and opposite pits are computed by index arithmetic, and moves do not allocate.
+ * Each player's house seed total and a bitmask of his non-empty houses are kept up to date on every change,
+ * so legality checks, legal move generation and game end detection are O(1).
+ * {@link #makeMove(int)} returns a primitive undo token which {@link #unmakeMove(long)} uses to take the move back,
+ * so search code can walk the game tree without copying the board.
+ * A Zobrist hash of the position is updated along with every seed change, see {@link #getHash()}.
+ * {@link #copy()} and {@link #forkInto(KalahaBoard)} duplicate a board with a few array copies.
+ * {@link KalahaGame}, {@link Player} and the {@link Pit} classes are thin views over this board.
+ */
+public final class KalahaBoard {
+
+	/* Undo token layout: house number, mover, flags, sown seeds and captured seeds packed in one long */
+	private static final long HOUSE_MASK = 0x1F;
+	private static final int PLAYER_SHIFT = 5;
+	private static final long CAPTURE_FLAG = 1L << 6;
+	private static final long GAME_END_FLAG = 1L << 7;
+	private static final int SOWN_SEEDS_SHIFT = 8;
+	private static final int CAPTURED_SEEDS_SHIFT = 36;
+	private static final long SEEDS_MASK = (1L << 28) - 1;
+
+	/** Zobrist key of player 1 being the player to move */
+	private static final long SIDE_TO_MOVE_KEY = 0x6A09E667F3BCC909L;
+
+	private final KalahaRules rules;
+	private final int numPlayers;
+	private final int housesPerPlayer;
+	private final int pitsPerPlayer;
+	/** Number of pits a sowing player visits in one lap: all pits except opponent stores */
+	private final int sowingLap;
+	private final int[] pits;
+	/** Per player sum of seeds in houses (stores excluded) */
+	private final int[] houseSeeds;
+	/** Per player bitmask of non-empty houses, bit N stands for house number N */
+	private final int[] nonEmptyHouses;
+	private final int allHousesMask;
+	/* Board as it was before the end-of-game sweep, restored when the final move is taken back */
+	private final int[] sweptPits;
+	private final int[] sweptHouseSeeds;
+	private final int[] sweptNonEmptyHouses;
+	private long sweptHash;
+	private int playerToMove;
+	private long hash;
+
+	public KalahaBoard(KalahaRules rules) {
+		this.rules = rules;
+		this.numPlayers = rules.getNumPlayers();
+		this.housesPerPlayer = rules.getHousesPerPlayer();
+		this.pitsPerPlayer = housesPerPlayer + 1;
+		this.pits = new int[rules.getPitsCount()];
+		this.sowingLap = pits.length - numPlayers + 1;
+		this.houseSeeds = new int[numPlayers];
+		this.nonEmptyHouses = new int[numPlayers];
+		this.allHousesMask = (1 << housesPerPlayer) - 1;
+		this.sweptPits = new int[pits.length];
+		this.sweptHouseSeeds = new int[numPlayers];
+		this.sweptNonEmptyHouses = new int[numPlayers];
+		for (int pit = 0; pit < pits.length; pit++) {
+			hash ^= zobristKey(pit, 0);
+			addSeeds(pit, isHouse(pit) ? rules.getInitialSeeds() : 0);
+		}
+	}
+
+	/**
+	 * @return independent board with the same position, including what is needed to take back the final move
+	 */
+	public KalahaBoard copy() {
+		return forkInto(new KalahaBoard(rules));
+	}
+
+	/**
+	 * Overwrites given board with the position of this board, so a preallocated board can be reused
+	 * @param target board of the same rules
+	 * @return given board
+	 */
+	public KalahaBoard forkInto(KalahaBoard target) {
+		Preconditions.checkArgument(rules.equals(target.rules), "Cannot fork %s board into %s", rules, target.rules);
+		System.arraycopy(pits, 0, target.pits, 0, pits.length);
+		System.arraycopy(houseSeeds, 0, target.houseSeeds, 0, numPlayers);
+		System.arraycopy(nonEmptyHouses, 0, target.nonEmptyHouses, 0, numPlayers);
+		System.arraycopy(sweptPits, 0, target.sweptPits, 0, pits.length);
+		System.arraycopy(sweptHouseSeeds, 0, target.sweptHouseSeeds, 0, numPlayers);
+		System.arraycopy(sweptNonEmptyHouses, 0, target.sweptNonEmptyHouses, 0, numPlayers);
+		target.sweptHash = sweptHash;
+		target.playerToMove = playerToMove;
+		target.hash = hash;
+		return target;
+	}
+
+	/**
+	 * Zobrist key of given seed count in given pit. Keys are computed (SplitMix64 finalizer) instead of
+	 * looked up in a random table, so they are unbounded in seed count and identical across JVMs.
+	 */
+	static long zobristKey(int pit, int seeds) {
+		long z = ((long) pit << 32 | seeds) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Single point of change for seed counts - keeps house totals, non-empty masks and hash in sync
+	 * @param pit pit index
+	 * @param seeds seeds to add, negative to remove
+	 */
+	private void addSeeds(int pit, int seeds) {
+		hash ^= zobristKey(pit, pits[pit]) ^ zobristKey(pit, pits[pit] + seeds);
+		pits[pit] += seeds;
+		if (isHouse(pit)) {
+			final int owner = getOwner(pit);
+			final int houseBit = 1 << (pit - owner * pitsPerPlayer);
+			houseSeeds[owner] += seeds;
+			if (pits[pit] == 0) {
+				nonEmptyHouses[owner] &= ~houseBit;
+			} else {
+				nonEmptyHouses[owner] |= houseBit;
+			}
+		}
+	}
+
+	/**
+	 * Makes a move for the player to move: sows seeds from given house, captures opposite seeds,
+	 * passes the turn (unless last seed landed in own store) and sweeps remaining seeds when game ends.
+	 * @param houseNum number of current player's House from where sowing starts, starting from 0
+	 * @return undo token for {@link #unmakeMove(long)}
+	 * @throws {@link IllegalStateException} - when makeMove is called, but the game has ended
+	 * @throws {@link IllegalArgumentException} - in case houseNumber is invalid (out-of-range, or empty)
+	 */
+	public long makeMove(int houseNum) {
+
+		Preconditions.checkState(!isGameFinished(), "Game has finished. Please restart to play again");
+		checkLegalMove(playerToMove, houseNum);
+
+		final int player = playerToMove;
+		final int sownSeeds = pits[getHousePit(player, houseNum)];
+		final int lastPit = sow(player, houseNum);
+		long undo = houseNum | (long) player << PLAYER_SHIFT | (long) sownSeeds << SOWN_SEEDS_SHIFT;
+
+		if (pits[lastPit] == 1 && isHouse(lastPit) && getOwner(lastPit) == player) {
+			final int oppositePit = getOppositePit(lastPit);
+			final int oppositeSeeds = pits[oppositePit];
+			if (oppositeSeeds != 0) {
+				addSeeds(getStorePit(player), oppositeSeeds + 1);
+				addSeeds(oppositePit, -oppositeSeeds);
+				addSeeds(lastPit, -1);
+				undo |= CAPTURE_FLAG | (long) oppositeSeeds << CAPTURED_SEEDS_SHIFT;
+			}
+		}
+
+		if (lastPit != getStorePit(player)) {
+			passTurn(getNextPlayer(player));
+		}
+
+		if (isGameFinished()) {
+			sweptHash = hash;
+			System.arraycopy(pits, 0, sweptPits, 0, pits.length);
+			System.arraycopy(houseSeeds, 0, sweptHouseSeeds, 0, numPlayers);
+			System.arraycopy(nonEmptyHouses, 0, sweptNonEmptyHouses, 0, numPlayers);
+			for (int p = 0; p < numPlayers; p++) {
+				moveAllOwnedSeedsToStore(p);
+			}
+			undo |= GAME_END_FLAG;
+		}
+		return undo;
+	}
+
+	/**
+	 * Takes back a move made by {@link #makeMove(int)}: restores the end-of-game sweep, captures,
+	 * sown seeds and the player to move. Moves must be taken back in reverse order they were made.
+	 * @param undo token returned by {@link #makeMove(int)}
+	 */
+	public void unmakeMove(long undo) {
+
+		if ((undo & GAME_END_FLAG) != 0) {
+			hash = sweptHash;
+			System.arraycopy(sweptPits, 0, pits, 0, pits.length);
+			System.arraycopy(sweptHouseSeeds, 0, houseSeeds, 0, numPlayers);
+			System.arraycopy(sweptNonEmptyHouses, 0, nonEmptyHouses, 0, numPlayers);
+		}
+
+		final int player = getUndoPlayer(undo);
+		passTurn(player);
+		final int lastPit = unsow(player, getUndoHouse(undo), (int) (undo >>> SOWN_SEEDS_SHIFT & SEEDS_MASK));
+
+		if ((undo & CAPTURE_FLAG) != 0) {
+			final int oppositeSeeds = getCapturedSeeds(undo);
+			addSeeds(getStorePit(player), -oppositeSeeds - 1);
+			addSeeds(getOppositePit(lastPit), oppositeSeeds);
+			addSeeds(lastPit, 1);
+		}
+	}
+
+	/* Undo token accessors */
+
+	/**
+	 * @return house number the move was sown from
+	 */
+	public static int getUndoHouse(long undo) {
+		return (int) (undo & HOUSE_MASK);
+	}
+
+	/**
+	 * @return index of player who made the move
+	 */
+	public static int getUndoPlayer(long undo) {
+		return (int) (undo >>> PLAYER_SHIFT) & 1;
+	}
+
+	public static boolean isCapture(long undo) {
+		return (undo & CAPTURE_FLAG) != 0;
+	}
+
+	/**
+	 * @return seeds taken from the opposite house, without the capturing seed itself
+	 */
+	public static int getCapturedSeeds(long undo) {
+		return (int) (undo >>> CAPTURED_SEEDS_SHIFT & SEEDS_MASK);
+	}
+
+	/**
+	 * @return true if the move ended the game and remaining seeds were swept to stores
+	 */
+	public static boolean isGameEnd(long undo) {
+		return (undo & GAME_END_FLAG) != 0;
+	}
+
+	/**
+	 * Sows seeds from given house of given player, skipping opponent stores.
+	 * Full laps around the board are added in one pass and only the remainder is walked,
+	 * so run time depends on board size and not on the seed count.
+	 * Neither captures nor turn passing is done here.
+	 * @param player player index
+	 * @param houseNum House number (starting from 0)
+	 * @return index of the pit that received last seed
+	 */
+	public int sowFromHouse(int player, int houseNum) {
+		checkLegalMove(player, houseNum);
+		return sow(player, houseNum);
+	}
+
+	private void checkLegalMove(int player, int houseNum) {
+		if (!isLegalMove(player, houseNum)) {
+			throw new IllegalArgumentException("Invalid house number: " + houseNum
+					+ ". Valid house numbers for player [" + player + "] are: " + validHouseNumbers(player));
+		}
+	}
+
+	private int sow(int player, int houseNum) {
+		final int house = getHousePit(player, houseNum);
+		final int ownStore = getStorePit(player);
+		final int seeds = pits[house];
+		addSeeds(house, -seeds);
+
+		final int laps = seeds / sowingLap;
+		if (laps > 0) {
+			for (int pit = 0; pit < pits.length; pit++) {
+				if (isHouse(pit) || pit == ownStore) {
+					hash ^= zobristKey(pit, pits[pit]) ^ zobristKey(pit, pits[pit] + laps);
+					pits[pit] += laps;
+				}
+			}
+			for (int p = 0; p < numPlayers; p++) {
+				houseSeeds[p] += laps * housesPerPlayer;
+				nonEmptyHouses[p] = allHousesMask;
+			}
+		}
+		// Sowing a whole number of laps ends in the house it started from
+		int pit = house;
+		for (int seedsToSow = seeds % sowingLap; seedsToSow > 0; ) {
+			pit = getNextPit(pit);
+			if (isHouse(pit) || pit == ownStore) {
+				addSeeds(pit, 1);
+				seedsToSow--;
+			}
+		}
+		return pit;
+	}
+
+	/**
+	 * Reverse of {@link #sow(int, int)}: takes sown seeds back to the house they came from
+	 * @return index of the pit that received last seed when sowing
+	 */
+	private int unsow(int player, int houseNum, int seeds) {
+		final int house = getHousePit(player, houseNum);
+		final int ownStore = getStorePit(player);
+
+		final int laps = seeds / sowingLap;
+		if (laps > 0) {
+			for (int pit = 0; pit < pits.length; pit++) {
+				if (isHouse(pit) || pit == ownStore) {
+					addSeeds(pit, -laps);
+				}
+			}
+		}
+		int pit = house;
+		for (int seedsToUnsow = seeds % sowingLap; seedsToUnsow > 0; ) {
+			pit = getNextPit(pit);
+			if (isHouse(pit) || pit == ownStore) {
+				addSeeds(pit, -1);
+				seedsToUnsow--;
+			}
+		}
+		addSeeds(house, seeds);
+		return pit;
+	}
+
+	/**
+	 * Computes, without sowing, the pit that would receive the last seed sown from given house
+	 * @param player player index
+	 * @param houseNum House number (starting from 0), must not be empty
+	 * @return pit index
+	 */
+	public int getLastPit(int player, int houseNum) {
+		final int rest = pits[getHousePit(player, houseNum)] % sowingLap;
+		// Position in the sowing lap as seen by the player: own houses, own store, then opponent houses
+		final int lapPos = (houseNum + rest) % sowingLap;
+		return lapPos <= housesPerPlayer ? player * pitsPerPlayer + lapPos
+				: getNextPlayer(player) * pitsPerPlayer + lapPos - pitsPerPlayer;
+	}
+
+	/**
+	 * @return true if given house of given player exists and has seeds to sow
+	 */
+	public boolean isLegalMove(int player, int houseNum) {
+		return houseNum >= 0 && houseNum < housesPerPlayer && (nonEmptyHouses[player] & (1 << houseNum)) != 0;
+	}
+
+	/**
+	 * @return bitmask of house numbers the player to move can sow from (bit N for house N), 0 if game has finished
+	 */
+	public int getLegalMoves() {
+		return isGameFinished() ? 0 : nonEmptyHouses[playerToMove];
+	}
+
+	/**
+	 * @return number of houses the player to move can sow from, 0 if game has finished
+	 */
+	public int getLegalMovesCount() {
+		return Integer.bitCount(getLegalMoves());
+	}
+
+	/**
+	 * Picks a legal move by its index, e.g. a random one without listing the moves
+	 * @param index from 0 to {@link #getLegalMovesCount()} - 1
+	 * @return house number of the legal move with given index, in house number order
+	 */
+	public int getLegalMove(int index) {
+		int legalMoves = getLegalMoves();
+		Preconditions.checkElementIndex(index, Integer.bitCount(legalMoves));
+		for (int skip = index; skip > 0; skip--) {
+			legalMoves &= legalMoves - 1;
+		}
+		return Integer.numberOfTrailingZeros(legalMoves);
+	}
+
+	private String validHouseNumbers(int player) {
+		StringBuilder str = new StringBuilder("[");
+		for (int houseNum = 0; houseNum < housesPerPlayer; houseNum++) {
+			if (isLegalMove(player, houseNum)) {
+				str.append(str.length() > 1 ? ", " : "").append(houseNum);
+			}
+		}
+		return str.append(']').toString();
+	}
+
+	/**
+	 * @return true if given player has no seeds to play, false otherwise
+	 */
+	public boolean isAllHousesEmpty(int player) {
+		return nonEmptyHouses[player] == 0;
+	}
+
+	public boolean isGameFinished() {
+		return nonEmptyHouses[0] == 0 || nonEmptyHouses[1] == 0;
+	}
+
+	/**
+	 * Moves all seeds from given player's houses to his store
+	 */
+	public void moveAllOwnedSeedsToStore(int player) {
+		final int firstHouse = getHousePit(player, 0);
+		final int store = getStorePit(player);
+		for (int pit = firstHouse; pit < store; pit++) {
+			hash ^= zobristKey(pit, pits[pit]) ^ zobristKey(pit, 0);
+			pits[pit] = 0;
+		}
+		hash ^= zobristKey(store, pits[store]) ^ zobristKey(store, pits[store] + houseSeeds[player]);
+		pits[store] += houseSeeds[player];
+		houseSeeds[player] = 0;
+		nonEmptyHouses[player] = 0;
+	}
+
+	/**
+	 * @return index of player with most seeds in store, or -1 if there is a draw
+	 */
+	public int getWinningPlayer() {
+		int winner = 0;
+		boolean isDraw = false;
+		for (int p = 1; p < numPlayers; p++) {
+			int diff = pits[getStorePit(p)] - pits[getStorePit(winner)];
+			if (diff > 0) {
+				winner = p;
+				isDraw = false;
+			} else if (diff == 0) {
+				isDraw = true;
+			}
+		}
+		return isDraw ? -1 : winner;
+	}
+
+	/**
+	 * @return Game state as String, player to move followed by seeds in every pit, e.g. <i>0|6|6|6|6|6|6|0|6|6|6|6|6|6|0</i>
+	 */
+	public String getBoardState() {
+		StringBuilder str = new StringBuilder(pits.length * 3 + 1).append(playerToMove);
+		for (int pit = 0; pit < pits.length; pit++) {
+			str.append('|').append(pits[pit]);
+		}
+		return str.toString();
+	}
+
+	/**
+	 * Sets up the board from given state, whitespace is ignored
+	 * @param gameState state, as returned by {@link #getBoardState()} method
+	 * @return <i>this</i>
+	 * @throws {@link IllegalArgumentException} - in case the state is malformed or does not fit the rules
+	 */
+	public KalahaBoard setBoardState(String gameState) {
+		int field = -1;
+		int value = 0;
+		long totalSeeds = 0;
+		boolean hasDigits = false;
+		for (int idx = 0; idx <= gameState.length(); idx++) {
+			final char ch = idx < gameState.length() ? gameState.charAt(idx) : '|';
+			if (ch >= '0' && ch <= '9') {
+				Preconditions.checkArgument(value <= (Integer.MAX_VALUE - 9) / 10, "Seed count too big: " + gameState);
+				value = value * 10 + (ch - '0');
+				hasDigits = true;
+			} else if (ch == '|') {
+				Preconditions.checkArgument(hasDigits && field < pits.length, "Invalid board state for " + rules + ": " + gameState);
+				if (field < 0) {
+					setPlayerToMove(value);
+				} else {
+					setSeeds(field, value);
+					totalSeeds += value;
+				}
+				field++;
+				value = 0;
+				hasDigits = false;
+			} else {
+				Preconditions.checkArgument(Character.isWhitespace(ch), "Invalid board state for " + rules + ": " + gameState);
+			}
+		}
+		Preconditions.checkArgument(field == pits.length, "Invalid board state for " + rules + ": " + gameState);
+		// Undo tokens keep sown and captured seeds in 28 bits, bounded by the seeds in play
+		Preconditions.checkArgument(totalSeeds <= KalahaRules.MAX_TOTAL_SEEDS, "Too many seeds in play, at most "
+				+ KalahaRules.MAX_TOTAL_SEEDS + " are supported: " + gameState);
+		return this;
+	}
+
+	/* Index arithmetic */
+
+	public int getNextPit(int pit) {
+		return pit + 1 == pits.length ? 0 : pit + 1;
+	}
+
+	public int getOppositePit(int pit) {
+		return housesPerPlayer * numPlayers - pit;
+	}
+
+	public boolean isHouse(int pit) {
+		return pit % pitsPerPlayer != housesPerPlayer;
+	}
+
+	public int getOwner(int pit) {
+		return pit / pitsPerPlayer;
+	}
+
+	public int getHousePit(int player, int houseNum) {
+		return player * pitsPerPlayer + houseNum;
+	}
+
+	public int getStorePit(int player) {
+		return player * pitsPerPlayer + housesPerPlayer;
+	}
+
+	public int getNextPlayer(int player) {
+		return player + 1 == numPlayers ? 0 : player + 1;
+	}
+
+	/* Getter,Setters */
+
+	public int getSeeds(int pit) {
+		return pits[pit];
+	}
+
+	public void setSeeds(int pit, int seeds) {
+		addSeeds(pit, seeds - pits[pit]);
+	}
+
+	/**
+	 * @return sum of seeds in given player's houses, store excluded
+	 */
+	public int getHouseSeeds(int player) {
+		return houseSeeds[player];
+	}
+
+	public int getPlayerToMove() {
+		return playerToMove;
+	}
+
+	public void setPlayerToMove(int playerToMove) {
+		Preconditions.checkElementIndex(playerToMove, numPlayers, "playerToMove");
+		passTurn(playerToMove);
+	}
+
+	private void passTurn(int player) {
+		if (player != playerToMove) {
+			hash ^= SIDE_TO_MOVE_KEY;
+			playerToMove = player;
+		}
+	}
+
+	/**
+	 * @return Zobrist hash of the position (seeds in all pits and player to move), updated incrementally on every move
+	 */
+	public long getHash() {
+		return hash;
+	}
+
+	public KalahaRules getRules() {
+		return rules;
+	}
+
+	public int getPitsCount() {
+		return pits.length;
+	}
+
+	public int getNumPlayers() {
+		return numPlayers;
+	}
+
+	public int getHousesPerPlayer() {
+		return housesPerPlayer;
+	}
+}
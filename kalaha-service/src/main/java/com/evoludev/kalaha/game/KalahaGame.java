@@ -3,85 +3,148 @@ package com.evoludev.kalaha.game;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
-import com.google.common.base.Preconditions;
-import com.google.common.base.Splitter;
+import com.evoludev.kalaha.metrics.KalahaMetrics;
 import com.google.common.collect.Lists;
 
+/**
+ * Game of Kalaha played by one thread at a time. Each move publishes the resulting {@link GamePosition},
+ * which other threads can read through {@link #getPosition()} without locking the game.
+ * Players, pits and the board are live views meant for the playing thread only.
+ * {@link MoveListener}s receive each move as a {@link MoveEvent} delta on the playing thread.
+ */
 public class KalahaGame {
 	
+	/* Standard Kalaha(6,6) setup, see {@link KalahaRules#DEFAULT} */
 	public static final int INITIAL_SEEDS_COUNT = 6;
 	public static final int NUM_PLAYERS = 2;
 	public static final int HOUSES_PER_PLAYER = 6;
 	
-	private List<Player> players = new ArrayList<>();
-	private Player playerToMove;
+	private final KalahaBoard board;
+	private final List<Pit> pits = new ArrayList<>();
+	private final List<Player> players = new ArrayList<>();
+	private final AtomicReference<GamePosition> position = new AtomicReference<>();
+	private final List<MoveListener> listeners = new CopyOnWriteArrayList<>();
 	
 	public Player getPlayerToMove() {
-		return playerToMove;
+		return players.get(board.getPlayerToMove());
 	}
 
 	public List<Player> getPlayers() {
 		return players;
 	}
 
-	private KalahaGame() {
+	/**
+	 * @return primitive board this game is a view of
+	 */
+	public KalahaBoard getBoard() {
+		return board;
+	}
+
+	public KalahaRules getRules() {
+		return board.getRules();
+	}
+
+	/**
+	 * @return latest published position, safe to call from any thread
+	 */
+	public GamePosition getPosition() {
+		return position.get();
+	}
+
+	/**
+	 * Publishes current board position. Moves publish by themselves,
+	 * to be called after changing the board or pits directly.
+	 * @return published position
+	 */
+	public GamePosition publishPosition() {
+		final GamePosition current = GamePosition.of(board);
+		position.set(current);
+		return current;
+	}
+
+	/**
+	 * Registers listener called after each move, on the thread making the move
+	 */
+	public void addMoveListener(MoveListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeMoveListener(MoveListener listener) {
+		listeners.remove(listener);
+	}
+
+	private KalahaGame(KalahaRules rules) {
+		this.board = new KalahaBoard(rules);
 	}
 	
 	/**
-	 * Initialized the game. Adds users, their houses and stores,
+	 * Initialized the game views. Adds users, their houses and stores,
 	 * creates a circular linked pit list (initialized via setNextPit method),
-	 * computes opposite pit and sets it up.
+	 * computes opposite pit and sets it up. Seeds themselves live in {@link KalahaBoard}.
 	 * @param player1name
 	 * @param player2name
 	 * @return <i>this</i>
 	 */
 	private KalahaGame init(String player1name, String player2name) {
-		List<Pit> allPits = new ArrayList<Pit>();
 		List<String> playerNames = Lists.newArrayList(player1name, player2name);
-		for (int playerIdx = 0; playerIdx < NUM_PLAYERS; playerIdx++) {
+		for (int playerIdx = 0; playerIdx < board.getNumPlayers(); playerIdx++) {
 			
 			List<House> playerHouses = new ArrayList<>();
-			final int playerPitStartIdx = playerIdx * (HOUSES_PER_PLAYER + 1);
-			final int playerPitEndIdx = playerPitStartIdx + HOUSES_PER_PLAYER;
-			for (int pitIdx = playerPitStartIdx; pitIdx < playerPitEndIdx; pitIdx++) {
-				playerHouses.add(new House(pitIdx, INITIAL_SEEDS_COUNT));
+			for (int houseNum = 0; houseNum < board.getHousesPerPlayer(); houseNum++) {
+				playerHouses.add(new House(board, board.getHousePit(playerIdx, houseNum)));
 			}
 
-			Player player = new Player(playerHouses, new Store(playerPitEndIdx, 0), playerIdx);
+			Player player = new Player(board, pits, playerHouses, new Store(board, board.getStorePit(playerIdx)), playerIdx);
 			player.setName(playerNames.get(playerIdx));
 			players.add(player);
 
-			allPits.addAll(playerHouses);
-			allPits.add(playerPitEndIdx, player.getStore());
+			pits.addAll(playerHouses);
+			pits.add(player.getStore());
 		}
 		
-		// Compute and link next and opposite pits
-		for (int idx = 0; idx < allPits.size(); idx ++) {
-			
-			Pit pit = allPits.get(idx);
-			pit.setNextPit(allPits.get((idx + 1) % allPits.size()));
+		// Link next and opposite pits
+		for (Pit pit : pits) {
+			pit.setNextPit(pits.get(board.getNextPit(pit.getOrdinal())));
 			if (pit.isHouse()) {
-				House house = (House) pit;
-				house.setOppositeHouse((House) allPits.get(HOUSES_PER_PLAYER * NUM_PLAYERS - idx));
+				((House) pit).setOppositeHouse((House) pits.get(board.getOppositePit(pit.getOrdinal())));
 			}
 		}
 		// Link next players
 		for (int pIdx = 0; pIdx < players.size(); pIdx++) {
-			players.get(pIdx).setNextPlayer(players.get((pIdx + 1) % players.size()));
+			players.get(pIdx).setNextPlayer(players.get(board.getNextPlayer(pIdx)));
 		}
-		this.playerToMove = players.get(0);
+		publishPosition();
 		return this;
 	}
 	
+	/**
+	 * @return independent game with the same position and player names
+	 */
+	public KalahaGame copy() {
+		return forkInto(new KalahaGame(getRules()).init(players.get(0).getName(), players.get(1).getName()));
+	}
+
+	/**
+	 * Overwrites the position of given game with the position of this game, player names are kept.
+	 * Reusing a target game avoids creating its pit and player views.
+	 * @param target game of the same rules
+	 * @return given game
+	 */
+	public KalahaGame forkInto(KalahaGame target) {
+		board.forkInto(target.board);
+		target.position.set(position.get());
+		return target;
+	}
+
 	/**
 	 * @return Player that wins (have won) current game or Optional.empty() if there is a draw
 	 */
 	public Optional<Player> getWinningPlayer() {
-		boolean isDraw = players.size() != players.stream().map(p->p.getStore().getSeeds()).collect(Collectors.toSet()).size();
-		return isDraw ? Optional.empty() : players.stream().max((p1, p2) -> Integer.compare(
-				p1.getStore().getSeeds(), p2.getStore().getSeeds()));
+		int winner = board.getWinningPlayer();
+		return winner < 0 ? Optional.empty() : Optional.of(players.get(winner));
 	}
 
 	/**
@@ -92,52 +155,35 @@ public class KalahaGame {
 	 * @thriws {@link IllegalArgumentException} - in case houseNumber is invalid (out-of-range, or empty)
 	 */
 	public KalahaGame makeMove(int houseNum) {
-	
-		/* House and game state checks */
-		Preconditions.checkState(!isGameFinished(), "Game has finished. Please restart to play again");
-		Preconditions.checkArgument(!playerToMove.isAllHousesEmpty(), "Invalid player turn or game finished. Player " + playerToMove + " has all empty houses!");
-		/* Checks finished */
-		
-		Pit lastSowedPit = this.playerToMove.sowSeedsFromHouse(houseNum);
-
-		if (lastSowedPit.getSeeds() == 1 && lastSowedPit.isHouse()) {
-			House lastSowedHouse = (House) lastSowedPit;
-			if (playerToMove.isOwnHouse(lastSowedHouse) && !lastSowedHouse.getOppositeHouse().isEmpty()) {
-				int oppositeSeeds = lastSowedHouse.getOppositeHouse().retrieveSeeds();
-				playerToMove.getStore().addSeeds(oppositeSeeds + lastSowedHouse.retrieveSeeds());				
+		final GamePosition before = position.get();
+		final long undo = board.makeMove(houseNum);
+		final GamePosition after = publishPosition();
+		KalahaMetrics.recordMove(undo, board);
+		if (!listeners.isEmpty()) {
+			final MoveEvent event = new MoveEvent(undo, before, after);
+			for (MoveListener listener : listeners) {
+				listener.moveMade(event);
 			}
 		}
-
-		if (!lastSowedPit.equals(playerToMove.getStore())) {
-			this.playerToMove = this.playerToMove.getNextPlayer();
-		}
-
-		if (isGameFinished()) {
-			getPlayersWithEmptyHouses().get(0).getNextPlayer().moveAllOwnedSeedsToStore();
-		}		
-		
 		return this;
 	}
-	
-	private List<Player> getPlayersWithEmptyHouses() {
-		return players.stream().filter(p -> p.isAllHousesEmpty()).collect(Collectors.toList());
-	}
 
 	public boolean isGameFinished() {
-		return players.stream().anyMatch(p -> p.isAllHousesEmpty());		
+		return board.isGameFinished();
+	}
+
+	/**
+	 * @return bitmask of house numbers the player to move can sow from (bit N for house N), 0 if game has finished
+	 */
+	public int getLegalMoves() {
+		return board.getLegalMoves();
 	}
 	
 	/**
 	 * @return Game state as String. Can be used to initialize arbitrary setup of seeds on board
 	 */
 	public String getBoardState() {
-		Player firstPlayer = players.get(0);
-		StringBuilder str = new StringBuilder(this.playerToMove.getIndex() + "|" 
-				+ firstPlayer.getFirstHouse().getSeeds() + "|");
-		for (Pit pit = firstPlayer.getFirstHouse().getNextPit(); pit != firstPlayer.getFirstHouse(); pit = pit.getNextPit()) {
-			str.append(pit.getSeeds() + "|");
-		}
-		return str.deleteCharAt(str.length() - 1).toString();
+		return board.getBoardState();
 	}
 
 	/**
@@ -146,7 +192,17 @@ public class KalahaGame {
 	 * @param player2 Player2 name
 	 */
 	public static KalahaGame newGame(String player1, String player2) {
-		return new KalahaGame().init(player1, player2);
+		return newGame(KalahaRules.DEFAULT, player1, player2);
+	}
+
+	/**
+	 * Start a fresh game of given Kalaha variant
+	 * @param rules board size and seed count
+	 * @param player1 Player1 name
+	 * @param player2 Player2 name
+	 */
+	public static KalahaGame newGame(KalahaRules rules, String player1, String player2) {
+		return new KalahaGame(rules).init(player1, player2);
 	}
 	
 	/**
@@ -156,17 +212,22 @@ public class KalahaGame {
 	 * @param player2 Player2 name
 	 */
 	public static KalahaGame fromBoardState(String gameState, String player1, String player2) {
+		return fromBoardState(KalahaRules.DEFAULT, gameState, player1, player2);
+	}
 
-		// TODO: validate gameState - input length, sum of all seeds in 14 pits should be exactly 72 (for 6-seed 2 players game), etc
-		List<Integer> boardState = Splitter.onPattern("\\|").splitToList(gameState.replaceAll("\\s", "")).stream()
-				.map(s -> Integer.valueOf(s)).collect(Collectors.toList());
-		KalahaGame game = newGame(player1, player2);
-		game.playerToMove = game.players.get(boardState.get(0));
-		Pit pit = game.players.get(0).getFirstHouse();
-		for (int num = 1; num < boardState.size(); num++) {
-			pit.setSeeds(boardState.get(num));
-			pit = pit.getNextPit();
-		}
+	/**
+	 * Initializes given Kalaha variant with given state.
+	 * @param rules board size and seed count
+	 * @param gameState state, as returned by {@link getBoardState()} method
+	 * @param player1 Player1 name
+	 * @param player2 Player2 name
+	 */
+	public static KalahaGame fromBoardState(KalahaRules rules, String gameState, String player1, String player2) {
+
+		// TODO: validate gameState - sum of all seeds should be exactly rules.getTotalSeeds(), etc
+		KalahaGame game = newGame(rules, player1, player2);
+		game.board.setBoardState(gameState);
+		game.publishPosition();
 		return game;
 	}
 }
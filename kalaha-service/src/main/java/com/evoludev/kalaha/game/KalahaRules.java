@@ -0,0 +1,88 @@
+package com.evoludev.kalaha.game;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Rules configuration of a Kalaha variant: number of players, houses per player and starting seeds per house.
+ * Board geometry (opposite houses, captures) is defined for two players only.
+ */
+public final class KalahaRules {
+
+	/** Standard Kalaha(6,6) */
+	public static final KalahaRules DEFAULT = new KalahaRules(KalahaGame.NUM_PLAYERS,
+			KalahaGame.HOUSES_PER_PLAYER, KalahaGame.INITIAL_SEEDS_COUNT);
+
+	/** Legal moves are kept as int bitmasks, one bit per house */
+	public static final int MAX_HOUSES_PER_PLAYER = 30;
+	/** Undo tokens keep seed counts in 28 bits */
+	public static final int MAX_TOTAL_SEEDS = (1 << 28) - 1;
+
+	private final int numPlayers;
+	private final int housesPerPlayer;
+	private final int initialSeeds;
+
+	public KalahaRules(int numPlayers, int housesPerPlayer, int initialSeeds) {
+		Preconditions.checkArgument(numPlayers == 2, "Only 2 player games are supported, got: " + numPlayers);
+		Preconditions.checkArgument(housesPerPlayer > 0 && housesPerPlayer <= MAX_HOUSES_PER_PLAYER,
+				"Houses per player must be between 1 and " + MAX_HOUSES_PER_PLAYER + ", got: " + housesPerPlayer);
+		Preconditions.checkArgument(initialSeeds > 0, "At least one initial seed per house is required, got: " + initialSeeds);
+		Preconditions.checkArgument((long) numPlayers * housesPerPlayer * initialSeeds <= MAX_TOTAL_SEEDS,
+				"Too many seeds in play, at most " + MAX_TOTAL_SEEDS + " are supported");
+		this.numPlayers = numPlayers;
+		this.housesPerPlayer = housesPerPlayer;
+		this.initialSeeds = initialSeeds;
+	}
+
+	/**
+	 * @return two player variant with given houses per player and initial seeds per house, e.g. Kalaha(6,20)
+	 */
+	public static KalahaRules of(int housesPerPlayer, int initialSeeds) {
+		return new KalahaRules(KalahaGame.NUM_PLAYERS, housesPerPlayer, initialSeeds);
+	}
+
+	public int getNumPlayers() {
+		return numPlayers;
+	}
+
+	public int getHousesPerPlayer() {
+		return housesPerPlayer;
+	}
+
+	public int getInitialSeeds() {
+		return initialSeeds;
+	}
+
+	/**
+	 * @return number of pits on board, houses and stores included
+	 */
+	public int getPitsCount() {
+		return numPlayers * (housesPerPlayer + 1);
+	}
+
+	/**
+	 * @return total number of seeds in play
+	 */
+	public int getTotalSeeds() {
+		return numPlayers * housesPerPlayer * initialSeeds;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof KalahaRules)) {
+			return false;
+		}
+		KalahaRules other = (KalahaRules) obj;
+		return numPlayers == other.numPlayers && housesPerPlayer == other.housesPerPlayer
+				&& initialSeeds == other.initialSeeds;
+	}
+
+	@Override
+	public int hashCode() {
+		return (numPlayers * 31 + housesPerPlayer) * 31 + initialSeeds;
+	}
+
+	@Override
+	public String toString() {
+		return "Kalaha(" + housesPerPlayer + "," + initialSeeds + ")";
+	}
+}
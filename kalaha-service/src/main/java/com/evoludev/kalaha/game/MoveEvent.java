@@ -0,0 +1,107 @@
+package com.evoludev.kalaha.game;
+
+/**
+ * Immutable delta of one move: pits whose seed count changed, capture, turn change and game over,
+ * along with the positions before and after the move
+ */
+public final class MoveEvent {
+
+	private final int player;
+	private final int houseNum;
+	private final long undo;
+	private final long changedPits;
+	private final GamePosition before;
+	private final GamePosition after;
+
+	MoveEvent(long undo, GamePosition before, GamePosition after) {
+		this.player = KalahaBoard.getUndoPlayer(undo);
+		this.houseNum = KalahaBoard.getUndoHouse(undo);
+		this.undo = undo;
+		this.before = before;
+		this.after = after;
+		long changed = 0;
+		for (int pit = 0; pit < after.getPitsCount(); pit++) {
+			if (before.getSeeds(pit) != after.getSeeds(pit)) {
+				changed |= 1L << pit;
+			}
+		}
+		this.changedPits = changed;
+	}
+
+	/**
+	 * @return index of the player who moved
+	 */
+	public int getPlayer() {
+		return player;
+	}
+
+	public int getHouseNum() {
+		return houseNum;
+	}
+
+	/**
+	 * @return bitmask of pits whose seed count changed, bit N for pit ordinal N
+	 */
+	public long getChangedPits() {
+		return changedPits;
+	}
+
+	public boolean isPitChanged(int pit) {
+		return (changedPits & 1L << pit) != 0;
+	}
+
+	public boolean isCapture() {
+		return KalahaBoard.isCapture(undo);
+	}
+
+	/**
+	 * @return seeds taken from the opposite house, 0 if the move did not capture
+	 */
+	public int getCapturedSeeds() {
+		return KalahaBoard.getCapturedSeeds(undo);
+	}
+
+	/**
+	 * @return true if the other player is to move next, false on an extra turn or when the game is over
+	 */
+	public boolean isTurnChange() {
+		return !isGameOver() && after.getPlayerToMove() != player;
+	}
+
+	public boolean isGameOver() {
+		return KalahaBoard.isGameEnd(undo);
+	}
+
+	/**
+	 * @return index of the winning player once the game is over, -1 on draw or while the game goes on
+	 */
+	public int getWinner() {
+		return isGameOver() ? after.getWinningPlayer() : -1;
+	}
+
+	public GamePosition getPositionBefore() {
+		return before;
+	}
+
+	public GamePosition getPosition() {
+		return after;
+	}
+
+	/**
+	 * @return delta in text form, e.g. <i>0:2 3=0 4=7 5=7 6=1 turn=0</i> - player and house, changed pits
+	 * with their new seed counts, then capture, next player or game over with the winner
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder str = new StringBuilder(64).append(player).append(':').append(houseNum);
+		for (long pits = changedPits; pits != 0; pits &= pits - 1) {
+			final int pit = Long.numberOfTrailingZeros(pits);
+			str.append(' ').append(pit).append('=').append(after.getSeeds(pit));
+		}
+		if (isCapture()) {
+			str.append(" capture=").append(getCapturedSeeds());
+		}
+		return (isGameOver() ? str.append(" winner=").append(getWinner())
+				: str.append(" turn=").append(after.getPlayerToMove())).toString();
+	}
+}
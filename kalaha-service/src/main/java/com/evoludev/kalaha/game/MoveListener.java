@@ -0,0 +1,9 @@
+package com.evoludev.kalaha.game;
+
+/**
+ * Receives moves of a {@link KalahaGame}, called on the thread making the move after its position is published
+ */
+public interface MoveListener {
+
+	void moveMade(MoveEvent event);
+}
@@ -2,17 +2,17 @@ package com.evoludev.kalaha.game;
 
 /**
  * @author antonio
- * Represents any Pit - Store or House
+ * Represents any Pit - Store or House. Seeds are kept in {@link KalahaBoard}, pit is a view over one board slot.
  */
 public abstract class Pit {
 
+	private final KalahaBoard board;
+	private final int ordinal;
 	private Pit nextPit;
-	private int seeds;
-	private int ordinal;	
 
-	public Pit(int ordinal, int seeds) {
+	public Pit(KalahaBoard board, int ordinal) {
+		this.board = board;
 		this.ordinal = ordinal;
-		this.seeds = seeds;
 	}
 	
 	public boolean isHouse() {
@@ -28,19 +28,19 @@ public abstract class Pit {
 	}
 
 	public void addSeeds(int seeds) {
-		this.seeds += seeds;
+		board.setSeeds(ordinal, board.getSeeds(ordinal) + seeds);
 	}
 	
 	public void setSeeds(int seeds) {
-		this.seeds = seeds;
+		board.setSeeds(ordinal, seeds);
 	}
 
 	public int getSeeds() {
-		return seeds;
+		return board.getSeeds(ordinal);
 	}
 
 	public boolean isEmpty() {
-		return this.seeds == 0;
+		return getSeeds() == 0;
 	}
 
 	public int getOrdinal() {
@@ -48,4 +48,4 @@ public abstract class Pit {
 	}	
 	
 	public abstract boolean isStore();
-}
\ No newline at end of file
+}
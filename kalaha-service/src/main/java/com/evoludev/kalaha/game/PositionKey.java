@@ -0,0 +1,123 @@
+package com.evoludev.kalaha.game;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Position packed in 128 bits: player to move in the lowest bit, followed by seed counts of all pits
+ * in pit order, each in {@link #getBitsPerPit(KalahaRules)} bits. Standard Kalaha(6,6) gets 9 bits per pit.
+ * Two positions of the same rules are equal if and only if their keys are equal.
+ */
+public final class PositionKey implements Comparable<PositionKey> {
+
+	private final long high;
+	private final long low;
+
+	public PositionKey(long high, long low) {
+		this.high = high;
+		this.low = low;
+	}
+
+	/**
+	 * @return number of bits each pit count takes in the key for given rules
+	 */
+	public static int getBitsPerPit(KalahaRules rules) {
+		return (Long.SIZE * 2 - 1) / rules.getPitsCount();
+	}
+
+	/**
+	 * @return packed key of the position on given board
+	 * @throws {@link IllegalArgumentException} - in case some pit holds more seeds than fit its bits
+	 */
+	public static PositionKey of(KalahaBoard board) {
+		final int bitsPerPit = getBitsPerPit(board.getRules());
+		final long maxSeeds = (1L << bitsPerPit) - 1;
+		long high = 0;
+		long low = board.getPlayerToMove();
+		int offset = 1;
+		for (int pit = 0; pit < board.getPitsCount(); pit++, offset += bitsPerPit) {
+			final long seeds = board.getSeeds(pit);
+			Preconditions.checkArgument(seeds <= maxSeeds, "Seed count " + seeds + " in pit " + pit
+					+ " does not fit " + bitsPerPit + " bits of packed key");
+			if (offset < Long.SIZE) {
+				low |= seeds << offset;
+				if (offset + bitsPerPit > Long.SIZE) {
+					high |= seeds >>> (Long.SIZE - offset);
+				}
+			} else {
+				high |= seeds << (offset - Long.SIZE);
+			}
+		}
+		return new PositionKey(high, low);
+	}
+
+	/**
+	 * @return packed key of given state, as returned by {@link KalahaGame#getBoardState()}
+	 */
+	public static PositionKey fromBoardState(KalahaRules rules, String gameState) {
+		return of(new KalahaBoard(rules).setBoardState(gameState));
+	}
+
+	/**
+	 * Sets up given board with the position of this key
+	 * @return given board
+	 */
+	public KalahaBoard applyTo(KalahaBoard board) {
+		final int bitsPerPit = getBitsPerPit(board.getRules());
+		final long maxSeeds = (1L << bitsPerPit) - 1;
+		board.setPlayerToMove((int) (low & 1));
+		int offset = 1;
+		for (int pit = 0; pit < board.getPitsCount(); pit++, offset += bitsPerPit) {
+			long seeds;
+			if (offset < Long.SIZE) {
+				seeds = low >>> offset;
+				if (offset + bitsPerPit > Long.SIZE) {
+					seeds |= high << (Long.SIZE - offset);
+				}
+			} else {
+				seeds = high >>> (offset - Long.SIZE);
+			}
+			board.setSeeds(pit, (int) (seeds & maxSeeds));
+		}
+		return board;
+	}
+
+	/**
+	 * @return state of this key in {@link KalahaGame#getBoardState()} format
+	 */
+	public String toBoardState(KalahaRules rules) {
+		return applyTo(new KalahaBoard(rules)).getBoardState();
+	}
+
+	public long getHigh() {
+		return high;
+	}
+
+	public long getLow() {
+		return low;
+	}
+
+	@Override
+	public int compareTo(PositionKey other) {
+		int cmp = Long.compareUnsigned(high, other.high);
+		return cmp != 0 ? cmp : Long.compareUnsigned(low, other.low);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof PositionKey)) {
+			return false;
+		}
+		PositionKey other = (PositionKey) obj;
+		return high == other.high && low == other.low;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(high * 31 + low);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%016x%016x", high, low);
+	}
+}
@@ -6,8 +6,8 @@ package com.evoludev.kalaha.game;
  */
 public class Store extends Pit {
 
-	public Store(int ordinal, int seeds) {
-		super(ordinal, seeds);
+	public Store(KalahaBoard board, int ordinal) {
+		super(board, ordinal);
 	}
 
 	@Override
@@ -11,18 +11,23 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
+import com.evoludev.kalaha.engine.AlphaBetaSearch;
+import com.evoludev.kalaha.engine.ComputerOpponent;
+import com.evoludev.kalaha.game.GamePosition;
 import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.evoludev.kalaha.game.MoveEvent;
 import com.evoludev.kalaha.game.Player;
-import com.google.common.base.Splitter;
 
 public class KalahaFrame extends JFrame {
 
@@ -67,37 +72,51 @@ public class KalahaFrame extends JFrame {
 		}
 	}
 	
-	private class KalahaStateHelper {
-		private String currentPlayerName;
-		private List<Integer> pitSeedCounts = new ArrayList<>();
-		
-		public KalahaStateHelper parseKalahaState() {
-			List<Integer> boardState = Splitter.onPattern("\\|").splitToList(kalaha.getBoardState()).stream()
-					.map(s -> Integer.valueOf(s)).collect(Collectors.toList());
-			pitSeedCounts.addAll(boardState.subList(1, boardState.size()));
-			currentPlayerName = kalaha.getPlayerToMove().getName();
-			return this;
-		}
-	
-		public String getCurrentPlayerName() {
-			return currentPlayerName;
+	/**
+	 * Who plays the second player, with computer's time per move
+	 */
+	private enum Opponent {
+		HUMAN("Human", 0),
+		COMPUTER_EASY("Computer - easy", 100),
+		COMPUTER_NORMAL("Computer - normal", 1000),
+		COMPUTER_STRONG("Computer - strong", 5000);
+
+		private final String text;
+		private final long moveTimeMillis;
+
+		Opponent(String text, long moveTimeMillis) {
+			this.text = text;
+			this.moveTimeMillis = moveTimeMillis;
 		}
-	
-		public List<Integer> getPitSeedCounts() {
-			return pitSeedCounts;
+
+		@Override
+		public String toString() {
+			return text;
 		}
 	}
 
+	/** Player played by the computer */
+	private static final int COMPUTER_PLAYER = 1;
+
 	private List<PitComponent> pitComponents = new ArrayList<>();
 	private Map<Integer, List<HouseButton>> playersHouseButtons = new HashMap<>();
 	private Map<Integer, StoreLabel> playersStoreLabels = new HashMap<>();
 	private KalahaGame kalaha;
 	private JLabel status;
+	private Opponent opponent = Opponent.HUMAN;
+	private ComputerOpponent computer;
 	
 	public KalahaFrame(String name) {
 		super(name);
 		setResizable(false);
 		kalaha = KalahaGame.newGame("Player 1", "Player 2");
+		kalaha.addMoveListener(event -> {
+			if (SwingUtilities.isEventDispatchThread()) {
+				updateBoard(event);
+			} else {
+				SwingUtilities.invokeLater(() -> updateBoard(event));
+			}
+		});
 	}
 
 	public void init() {
@@ -111,7 +130,7 @@ public class KalahaFrame extends JFrame {
 		mainPanel.setLayout(mainLayout);
 		mainPanel.add(new JPanel(), BorderLayout.PAGE_START);
 
-		GridLayout centerLayout = new GridLayout(2, 6);
+		GridLayout centerLayout = new GridLayout(2, kalaha.getRules().getHousesPerPlayer());
 		centerLayout.setHgap(10);
 		centerLayout.setVgap(60);
 		JPanel centerPanel = new JPanel(centerLayout);
@@ -131,48 +150,99 @@ public class KalahaFrame extends JFrame {
 		status = new JLabel(kalaha.getPlayerToMove().getName() + " to go");
 		status.setFont(new Font("Verdana", Font.PLAIN, 20));
 		status.setForeground(kalaha.getPlayerToMove().getIndex() == 0 ? Color.GREEN : Color.RED);		
+		JComboBox<Opponent> opponentChoice = new JComboBox<>(Opponent.values());
+		opponentChoice.addActionListener(e -> setOpponent((Opponent) opponentChoice.getSelectedItem()));
 		JPanel statusPanel = new JPanel();
 		statusPanel.add(status);
+		statusPanel.add(opponentChoice);
 		mainPanel.add(statusPanel, BorderLayout.PAGE_END);
 
 		getContentPane().add(mainPanel);
 	}
 	
-	private void updateBoard() {
+	/**
+	 * Repaints only pits changed by the move, status and enabled houses only when the turn passes or the game ends
+	 */
+	private void updateBoard(MoveEvent event) {
 		
-		KalahaStateHelper stateHelper = new KalahaStateHelper().parseKalahaState();
-		for (int c = 0; c < pitComponents.size(); c++) {
-			pitComponents.get(c).updateFromSeedCount(stateHelper.getPitSeedCounts().get(c));
-		}
-		for (Player player: kalaha.getPlayers()) {
-			playersStoreLabels.get(player.getIndex()).setText(String.valueOf(player.getStore().getSeeds()));			
+		GamePosition position = event.getPosition();
+		for (long changed = event.getChangedPits(); changed != 0; changed &= changed - 1) {
+			int pit = Long.numberOfTrailingZeros(changed);
+			pitComponents.get(pit).updateFromSeedCount(position.getSeeds(pit));
 		}
 		
-		if (!kalaha.isGameFinished()) {
-			status.setText(stateHelper.getCurrentPlayerName() + " to go");
-			status.setForeground(kalaha.getPlayerToMove().getIndex() == 0 ? Color.GREEN : Color.RED);
+		List<Player> players = kalaha.getPlayers();
+		if (event.isTurnChange()) {
+			int playerToMove = position.getPlayerToMove();
+			status.setText(players.get(playerToMove).getName() + " to go");
+			status.setForeground(playerToMove == 0 ? Color.GREEN : Color.RED);
 			
-			playersHouseButtons.get(kalaha.getPlayerToMove().getIndex()).forEach(h -> h.setEnabled(true));
-			playersHouseButtons.get(kalaha.getPlayerToMove().getNextPlayer().getIndex()).forEach(h -> h.setEnabled(false));
-		} else {
+			enableHouses(playerToMove);
+		} else if (event.isGameOver()) {
 			
 			playersHouseButtons.values().forEach(c->c.stream().forEach(h -> h.setEnabled(false)));
-			if (kalaha.getWinningPlayer().isPresent()){
-				status.setText("Winner is " + kalaha.getWinningPlayer().get().getName());
-				status.setForeground(kalaha.getWinningPlayer().get().getIndex() == 0 ? Color.GREEN : Color.RED);				
+			int winner = event.getWinner();
+			if (winner >= 0) {
+				status.setText("Winner is " + players.get(winner).getName());
+				status.setForeground(winner == 0 ? Color.GREEN : Color.RED);				
 			} else {
 				status.setText("It's a draw!");
 				status.setForeground(Color.BLACK);
 			}
 		}
+		startComputer(position);
+	}
+
+	private void enableHouses(int playerToMove) {
+		boolean humanToMove = opponent == Opponent.HUMAN || playerToMove != COMPUTER_PLAYER;
+		playersHouseButtons.get(playerToMove).forEach(h -> h.setEnabled(humanToMove));
+		playersHouseButtons.get(1 - playerToMove).forEach(h -> h.setEnabled(false));
+	}
+
+	private void setOpponent(Opponent selected) {
+		opponent = selected;
+		if (selected == Opponent.HUMAN) {
+			if (computer != null) {
+				computer.cancel();
+			}
+		} else {
+			if (computer == null) {
+				AlphaBetaSearch search = new AlphaBetaSearch();
+				search.setThreads(Runtime.getRuntime().availableProcessors());
+				computer = new ComputerOpponent(search, SwingUtilities::invokeLater);
+			}
+			computer.setMoveTimeMillis(selected.moveTimeMillis);
+		}
+		GamePosition position = kalaha.getPosition();
+		if (!position.isGameFinished()) {
+			enableHouses(position.getPlayerToMove());
+		}
+		startComputer(position);
+	}
+
+	/**
+	 * Lets computer move or ponder on its background thread, the move is made back on this thread
+	 */
+	private void startComputer(GamePosition position) {
+		if (opponent == Opponent.HUMAN) {
+			return;
+		}
+		if (position.isGameFinished()) {
+			computer.cancel();
+		} else if (position.getPlayerToMove() == COMPUTER_PLAYER) {
+			computer.play(position, kalaha::makeMove);
+		} else {
+			computer.ponder(position);
+		}
 	}
 
 	private void initKalahaComponents() {
 		
 		// TODO: refactor player attributes such as color to separate class
-		playersHouseButtons.put(0, createHouseButtons(KalahaGame.HOUSES_PER_PLAYER, String.valueOf(KalahaGame.INITIAL_SEEDS_COUNT), Color.GREEN));
+		KalahaRules rules = kalaha.getRules();
+		playersHouseButtons.put(0, createHouseButtons(rules.getHousesPerPlayer(), String.valueOf(rules.getInitialSeeds()), Color.GREEN));
 		playersStoreLabels.put(0,  createStoreLabel("0", Color.GREEN));
-		playersHouseButtons.put(1, createHouseButtons(KalahaGame.HOUSES_PER_PLAYER, String.valueOf(KalahaGame.INITIAL_SEEDS_COUNT), Color.RED));
+		playersHouseButtons.put(1, createHouseButtons(rules.getHousesPerPlayer(), String.valueOf(rules.getInitialSeeds()), Color.RED));
 		playersStoreLabels.put(1,  createStoreLabel("0", Color.RED));		
 		
 		pitComponents.addAll(playersHouseButtons.get(0));
@@ -205,7 +275,6 @@ public class KalahaFrame extends JFrame {
 				public void actionPerformed(ActionEvent e) {
 					if (!"0".equals(houseButton.getText().trim())) {
 						kalaha.makeMove(houseButton.getOrdinal());
-						updateBoard();
 					}
 				}
 			});
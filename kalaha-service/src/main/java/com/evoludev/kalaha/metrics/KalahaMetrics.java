@@ -0,0 +1,256 @@
+package com.evoludev.kalaha.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+
+/**
+ * Process wide counters of played games and latency histograms of move handling and engine search.
+ * <p>
+ * Disabled unless the <i>kalaha.metrics</i> system property is true or {@link #setEnabled(boolean)} is called.
+ * While disabled every recording method returns after reading one flag. Counters are striped
+ * ({@link LongAdder}) and recording never allocates. Exposed over JMX by {@link #registerMBean()}
+ * and as Prometheus text by {@link #scrape()}.
+ */
+public final class KalahaMetrics {
+
+	public static final String OBJECT_NAME = "com.evoludev.kalaha:type=Metrics";
+
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	private static volatile boolean enabled = Boolean.getBoolean("kalaha.metrics");
+
+	private static final LongAdder moves = new LongAdder();
+	private static final LongAdder captures = new LongAdder();
+	private static final LongAdder extraTurns = new LongAdder();
+	private static final LongAdder finishedGames = new LongAdder();
+	private static final LongAdder draws = new LongAdder();
+	private static final LatencyHistogram moveLatency = new LatencyHistogram("kalaha_move_latency");
+	private static final LatencyHistogram searchLatency = new LatencyHistogram("kalaha_search_latency");
+
+	private static boolean registered;
+
+	private KalahaMetrics() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		KalahaMetrics.enabled = enabled;
+	}
+
+	/**
+	 * Counts a move of a played game
+	 * @param undo undo token returned by {@link KalahaBoard#makeMove(int)}
+	 * @param board board after the move
+	 */
+	public static void recordMove(long undo, KalahaBoard board) {
+		if (!enabled) {
+			return;
+		}
+		moves.increment();
+		if (KalahaBoard.isCapture(undo)) {
+			captures.increment();
+		}
+		if (KalahaBoard.isGameEnd(undo)) {
+			finishedGames.increment();
+			if (board.getWinningPlayer() < 0) {
+				draws.increment();
+			}
+		} else if (board.getPlayerToMove() == KalahaBoard.getUndoPlayer(undo)) {
+			extraTurns.increment();
+		}
+	}
+
+	/**
+	 * @return start of a timed operation for {@link #recordMoveLatency(long)}, 0 while disabled
+	 */
+	public static long startTimer() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * @param startNanos value of {@link #startTimer()} when handling of the move began
+	 */
+	public static void recordMoveLatency(long startNanos) {
+		if (startNanos != 0) {
+			moveLatency.record(System.nanoTime() - startNanos);
+		}
+	}
+
+	public static void recordSearchLatency(long elapsedNanos) {
+		if (enabled) {
+			searchLatency.record(elapsedNanos);
+		}
+	}
+
+	public static long getMoves() {
+		return moves.sum();
+	}
+
+	public static long getCaptures() {
+		return captures.sum();
+	}
+
+	public static long getExtraTurns() {
+		return extraTurns.sum();
+	}
+
+	public static long getFinishedGames() {
+		return finishedGames.sum();
+	}
+
+	public static long getDraws() {
+		return draws.sum();
+	}
+
+	public static LatencyHistogram getMoveLatency() {
+		return moveLatency;
+	}
+
+	public static LatencyHistogram getSearchLatency() {
+		return searchLatency;
+	}
+
+	/**
+	 * Registers {@link KalahaMetricsMXBean} with the platform MBean server, once
+	 */
+	public static synchronized void registerMBean() {
+		if (registered) {
+			return;
+		}
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new MBean(), name);
+			}
+			registered = true;
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+		}
+	}
+
+	/**
+	 * @return all metrics in Prometheus text exposition format
+	 */
+	public static String scrape() {
+		final StringBuilder text = new StringBuilder(2048);
+		appendCounter(text, "kalaha_moves_total", "Moves of played games", getMoves());
+		appendCounter(text, "kalaha_captures_total", "Moves capturing opposite seeds", getCaptures());
+		appendCounter(text, "kalaha_extra_turns_total", "Moves ending in own store", getExtraTurns());
+		appendCounter(text, "kalaha_finished_games_total", "Finished games", getFinishedGames());
+		appendCounter(text, "kalaha_draws_total", "Games finished in a draw", getDraws());
+		appendSummary(text, moveLatency, "Move request handling");
+		appendSummary(text, searchLatency, "Engine search");
+		return text.toString();
+	}
+
+	private static void appendCounter(StringBuilder text, String name, String help, long value) {
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n')
+				.append("# TYPE ").append(name).append(" counter\n")
+				.append(name).append(' ').append(value).append('\n');
+	}
+
+	private static void appendSummary(StringBuilder text, LatencyHistogram histogram, String help) {
+		final String name = histogram.getName() + "_seconds";
+		text.append("# HELP ").append(name).append(' ').append(help).append('\n')
+				.append("# TYPE ").append(name).append(" summary\n");
+		for (double quantile : QUANTILES) {
+			text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+					.append(seconds(histogram.getQuantileNanos(quantile))).append('\n');
+		}
+		text.append(name).append("_sum ").append(seconds(histogram.getTotalNanos())).append('\n')
+				.append(name).append("_count ").append(histogram.getCount()).append('\n');
+	}
+
+	private static String seconds(long nanos) {
+		return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+	}
+
+	private static final class MBean implements KalahaMetricsMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return KalahaMetrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			KalahaMetrics.setEnabled(enabled);
+		}
+
+		@Override
+		public long getMoves() {
+			return KalahaMetrics.getMoves();
+		}
+
+		@Override
+		public long getCaptures() {
+			return KalahaMetrics.getCaptures();
+		}
+
+		@Override
+		public long getExtraTurns() {
+			return KalahaMetrics.getExtraTurns();
+		}
+
+		@Override
+		public long getFinishedGames() {
+			return KalahaMetrics.getFinishedGames();
+		}
+
+		@Override
+		public long getDraws() {
+			return KalahaMetrics.getDraws();
+		}
+
+		@Override
+		public long getMoveLatencyCount() {
+			return moveLatency.getCount();
+		}
+
+		@Override
+		public long getMoveLatencyMeanNanos() {
+			return moveLatency.getMeanNanos();
+		}
+
+		@Override
+		public long getMoveLatencyP99Nanos() {
+			return moveLatency.getQuantileNanos(0.99);
+		}
+
+		@Override
+		public long getMoveLatencyMaxNanos() {
+			return moveLatency.getMaxNanos();
+		}
+
+		@Override
+		public long getSearchLatencyCount() {
+			return searchLatency.getCount();
+		}
+
+		@Override
+		public long getSearchLatencyMeanNanos() {
+			return searchLatency.getMeanNanos();
+		}
+
+		@Override
+		public long getSearchLatencyP99Nanos() {
+			return searchLatency.getQuantileNanos(0.99);
+		}
+
+		@Override
+		public long getSearchLatencyMaxNanos() {
+			return searchLatency.getMaxNanos();
+		}
+	}
+}
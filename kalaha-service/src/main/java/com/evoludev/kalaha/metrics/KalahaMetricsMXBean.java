@@ -0,0 +1,37 @@
+package com.evoludev.kalaha.metrics;
+
+/**
+ * JMX view of {@link KalahaMetrics}, registered as {@value KalahaMetrics#OBJECT_NAME}
+ */
+public interface KalahaMetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getMoves();
+
+	long getCaptures();
+
+	long getExtraTurns();
+
+	long getFinishedGames();
+
+	long getDraws();
+
+	long getMoveLatencyCount();
+
+	long getMoveLatencyMeanNanos();
+
+	long getMoveLatencyP99Nanos();
+
+	long getMoveLatencyMaxNanos();
+
+	long getSearchLatencyCount();
+
+	long getSearchLatencyMeanNanos();
+
+	long getSearchLatencyP99Nanos();
+
+	long getSearchLatencyMaxNanos();
+}
@@ -0,0 +1,106 @@
+package com.evoludev.kalaha.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Log-linear histogram of durations in nanoseconds: every power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so quantiles are within 12.5% of the recorded values.
+ * Buckets are striped counters ({@link LongAdder}), recording neither allocates nor contends on a shared field.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final String name;
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * @param name metric name, without unit
+	 */
+	public LatencyHistogram(String name) {
+		this.name = name;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			buckets[bucket] = new LongAdder();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void record(long nanos) {
+		final long value = Math.max(0, nanos);
+		buckets[bucketOf(value)].increment();
+		totalNanos.add(value);
+		maxNanos.accumulate(value);
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (LongAdder bucket : buckets) {
+			count += bucket.sum();
+		}
+		return count;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	public long getMeanNanos() {
+		final long count = getCount();
+		return count == 0 ? 0 : getTotalNanos() / count;
+	}
+
+	/**
+	 * @param quantile between 0 and 1
+	 * @return upper bound of the bucket holding given quantile, 0 if nothing was recorded
+	 */
+	public long getQuantileNanos(double quantile) {
+		Preconditions.checkArgument(quantile >= 0 && quantile <= 1, "Quantile must be between 0 and 1, got: " + quantile);
+		final long[] counts = new long[BUCKETS];
+		long count = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			counts[bucket] = buckets[bucket].sum();
+			count += counts[bucket];
+		}
+		final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts[bucket];
+			if (seen >= rank) {
+				return Math.min(upperBound(bucket), getMaxNanos());
+			}
+		}
+		return 0;
+	}
+
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		final int shift = exponent - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift & SUB_BUCKETS - 1);
+	}
+
+	static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int shift = bucket / SUB_BUCKETS - 1;
+		final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+}
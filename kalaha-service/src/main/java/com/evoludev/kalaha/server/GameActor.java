@@ -0,0 +1,170 @@
+package com.evoludev.kalaha.server;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.evoludev.kalaha.game.KalahaGame;
+
+/**
+ * Single writer of one hosted {@link KalahaGame}. Commands are queued to a lock-free mailbox and applied
+ * in order by at most one task of the shared executor at a time, so the game itself needs no locking
+ * and no thread ever waits for a monitor. All commands found in the mailbox (up to {@link #MAX_BATCH})
+ * are applied as one batch, followed by publishing a single snapshot.
+ * Readers get the last published {@link GameSnapshot} with a volatile read.
+ * With a {@link MoveJournal}, moves are acknowledged once their records are durable. If the journal
+ * fails, the actor is failed: the published moves cannot be recovered, so all further moves are rejected.
+ */
+public final class GameActor {
+
+	/** Commands applied before the actor yields its executor thread to other games */
+	public static final int MAX_BATCH = 64;
+
+	private final KalahaGame game;
+	private final Executor executor;
+	private final Queue<MoveCommand> mailbox = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+	/** Commands of the running batch and position hashes after them, only touched by the running drain task */
+	private final MoveCommand[] batch = new MoveCommand[MAX_BATCH];
+	private final long[] batchHashes = new long[MAX_BATCH];
+	private final MoveJournal journal;
+	private final long gameId;
+	private long moveNumber;
+	private volatile GameSnapshot snapshot;
+	/** Journal failure, set by the drain task or by a failed durability wait */
+	private volatile Throwable failure;
+
+	public GameActor(KalahaGame game, Executor executor) {
+		this(game, executor, 0, null, 0);
+	}
+
+	/**
+	 * @param moveNumber number of moves played in given game so far
+	 * @param journal journal of accepted moves, may be null
+	 * @param gameId id of the game in the journal
+	 */
+	public GameActor(KalahaGame game, Executor executor, long moveNumber, MoveJournal journal, long gameId) {
+		this.game = game;
+		this.executor = executor;
+		this.moveNumber = moveNumber;
+		this.journal = journal;
+		this.gameId = gameId;
+		this.snapshot = GameSnapshot.of(game, moveNumber);
+	}
+
+	/**
+	 * @return last published state, never blocks
+	 */
+	public GameSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return true if no command is queued or being applied, so the last snapshot is the current state
+	 */
+	public boolean isIdle() {
+		return !scheduled.get() && mailbox.isEmpty();
+	}
+
+	/**
+	 * @return true if the journal failed and moves are rejected
+	 */
+	public boolean isFailed() {
+		return failure != null;
+	}
+
+	/**
+	 * Queues a move of the player to move
+	 * @return future completed with the snapshot published after the batch containing this move (and journaled),
+	 * or exceptionally if the move is not legal at its turn or the actor is failed
+	 */
+	public CompletableFuture<GameSnapshot> move(int houseNum) {
+		final MoveCommand command = new MoveCommand(houseNum);
+		mailbox.add(command);
+		if (scheduled.compareAndSet(false, true)) {
+			executor.execute(this::drain);
+		}
+		return command.result;
+	}
+
+	private void drain() {
+		int applied = 0;
+		for (int polled = 0; polled < MAX_BATCH; polled++) {
+			final MoveCommand command = mailbox.poll();
+			if (command == null) {
+				break;
+			}
+			if (failure != null) {
+				command.result.completeExceptionally(new IllegalStateException("Game session failed", failure));
+				continue;
+			}
+			try {
+				game.makeMove(command.houseNum);
+				moveNumber++;
+				batchHashes[applied] = game.getBoard().getHash();
+				batch[applied++] = command;
+			} catch (RuntimeException e) {
+				command.result.completeExceptionally(e);
+			}
+		}
+		if (applied > 0) {
+			final GameSnapshot published = GameSnapshot.of(game, moveNumber);
+			snapshot = published;
+			final MoveCommand[] done = Arrays.copyOf(batch, applied);
+			Arrays.fill(batch, 0, applied, null);
+			if (journal == null) {
+				complete(done, published);
+			} else {
+				// Journaled after publishing, so a checkpoint reading an older snapshot has these moves after its start
+				try {
+					long end = 0;
+					for (int i = 0; i < applied; i++) {
+						end = journal.append(gameId, batchHashes[i], moveNumber - applied + 1 + i,
+								MoveJournal.moveWord(done[i].houseNum));
+					}
+					journal.whenDurable(end).whenComplete((ignored, error) -> {
+						if (error == null) {
+							complete(done, published);
+						} else {
+							fail(done, error);
+						}
+					});
+				} catch (IOException | RuntimeException e) {
+					fail(done, e);
+				}
+			}
+		}
+		scheduled.set(false);
+		// Commands queued after the last poll but before the flag was cleared found it set and did not schedule
+		if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+			executor.execute(this::drain);
+		}
+	}
+
+	private void fail(MoveCommand[] commands, Throwable error) {
+		failure = error;
+		for (MoveCommand command : commands) {
+			command.result.completeExceptionally(error);
+		}
+	}
+
+	private static void complete(MoveCommand[] commands, GameSnapshot published) {
+		for (MoveCommand command : commands) {
+			command.result.complete(published);
+		}
+	}
+
+	private static final class MoveCommand {
+
+		private final int houseNum;
+		private final CompletableFuture<GameSnapshot> result = new CompletableFuture<>();
+
+		MoveCommand(int houseNum) {
+			this.houseNum = houseNum;
+		}
+	}
+}
@@ -0,0 +1,549 @@
+package com.evoludev.kalaha.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.evoludev.kalaha.game.PositionKey;
+import com.google.common.base.Preconditions;
+
+/**
+ * Sharded store of game sessions. A session is either hot - a live {@link GameActor} with its {@link KalahaGame} -
+ * or parked as a packed {@link PositionKey} and a move number, on heap or in off-heap slabs.
+ * <p>
+ * Each shard keeps hot and parked sessions in access-ordered maps. Beyond the hot session limit, least recently
+ * used idle sessions are parked, and rehydrated by their next move. Beyond the memory limit, least recently used
+ * parked sessions are evicted. Sessions idle longer than their time to live are removed by
+ * {@link #evictExpired()}. Byte counts are estimates, the store does not measure object sizes.
+ * <p>
+ * With a {@link MoveJournal}, session creation and removal are journaled under the shard lock and moves by
+ * the session's {@link GameActor}.
+ */
+public class GameSessionStore {
+
+	public static final String PLAYER1_NAME = "Player1";
+	public static final String PLAYER2_NAME = "Player2";
+
+	/** Estimated heap bytes of a hot session: actor, game views and board, plus per pit bytes */
+	static final int HOT_SESSION_BYTES = 768;
+	static final int HOT_SESSION_PIT_BYTES = 64;
+	/** Estimated heap bytes of a parked session: map entry, boxed id and packed fields */
+	static final int PARKED_SESSION_BYTES = 128;
+	/** Off-heap parked record: position key high and low, move number */
+	static final int OFF_HEAP_RECORD_BYTES = 3 * Long.BYTES;
+	private static final int INITIAL_SLAB_RECORDS = 1024;
+
+	private final Shard[] shards;
+	private final int maxHotPerShard;
+	private final long maxBytesPerShard;
+	private final long defaultTtlMillis;
+	private final boolean offHeap;
+	private final Executor actorExecutor;
+	private final AtomicLong nextId = new AtomicLong(1);
+	private MoveJournal journal;
+
+	/**
+	 * Receives state of a session
+	 */
+	public interface SessionVisitor {
+
+		void visit(long id, KalahaRules rules, String boardState, long moveNumber, long ttlMillis);
+	}
+
+	/**
+	 * @param shards number of independently locked shards, rounded up to a power of two
+	 * @param maxHotSessions sessions kept as live games, split evenly among shards
+	 * @param maxBytes estimated memory of all sessions, split evenly among shards
+	 * @param defaultTtlMillis time to live of idle sessions created without one
+	 * @param offHeap true to keep parked sessions in direct buffers
+	 * @param actorExecutor executor shared by all game actors
+	 */
+	public GameSessionStore(int shards, int maxHotSessions, long maxBytes, long defaultTtlMillis, boolean offHeap,
+			Executor actorExecutor) {
+		Preconditions.checkArgument(shards > 0 && shards <= 1 << 16, "Shards must be between 1 and 65536, got: " + shards);
+		Preconditions.checkArgument(maxHotSessions >= 0, "Hot sessions limit must not be negative, got: " + maxHotSessions);
+		Preconditions.checkArgument(defaultTtlMillis > 0, "Time to live must be positive, got: " + defaultTtlMillis);
+		this.shards = new Shard[Integer.bitCount(shards) == 1 ? shards : Integer.highestOneBit(shards) << 1];
+		for (int shard = 0; shard < this.shards.length; shard++) {
+			this.shards[shard] = new Shard();
+		}
+		this.maxHotPerShard = (maxHotSessions + this.shards.length - 1) / this.shards.length;
+		this.maxBytesPerShard = maxBytes / this.shards.length;
+		this.defaultTtlMillis = defaultTtlMillis;
+		this.offHeap = offHeap;
+		this.actorExecutor = actorExecutor;
+	}
+
+	public MoveJournal getJournal() {
+		return journal;
+	}
+
+	/**
+	 * Sets journal recording session creation, moves and removal. Must be set before sessions are created.
+	 */
+	public void setJournal(MoveJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Creates a session with a fresh game and default time to live
+	 * @return session id
+	 */
+	public long create(KalahaRules rules) {
+		return create(rules, defaultTtlMillis);
+	}
+
+	/**
+	 * Creates a session with a fresh game
+	 * @param ttlMillis time the session lives without being accessed
+	 * @return session id
+	 */
+	public long create(KalahaRules rules, long ttlMillis) {
+		Preconditions.checkArgument(ttlMillis > 0, "Time to live must be positive, got: " + ttlMillis);
+		final long id = nextId.getAndIncrement();
+		final Session session = new Session(rules, ttlMillis);
+		final KalahaGame game = KalahaGame.newGame(rules, PLAYER1_NAME, PLAYER2_NAME);
+		session.actor = new GameActor(game, actorExecutor, 0, journal, id);
+		final Shard shard = shardOf(id);
+		synchronized (shard) {
+			// Journaled under the shard lock, so that a checkpoint either sees the session or starts before this record,
+			// and before adding, so that a session whose record failed is never stored
+			journal(id, game.getBoard().getHash(), 0, MoveJournal.createWord(rules));
+			shard.hot.put(id, session);
+			shard.heapBytes += hotBytes(rules);
+			enforceLimits(shard);
+		}
+		return id;
+	}
+
+	/**
+	 * @return current state of given session without rehydrating it, null if there is no such session
+	 */
+	public GameSnapshot getSnapshot(long id) {
+		final Shard shard = shardOf(id);
+		synchronized (shard) {
+			Session session = shard.hot.get(id);
+			if (session != null) {
+				session.lastAccessMillis = System.currentTimeMillis();
+				return session.actor.getSnapshot();
+			}
+			session = shard.parked.get(id);
+			if (session == null) {
+				return null;
+			}
+			session.lastAccessMillis = System.currentTimeMillis();
+			return GameSnapshot.of(shard.getKey(session).applyTo(new KalahaBoard(session.rules)),
+					shard.getMoveNumber(session));
+		}
+	}
+
+	/**
+	 * Queues a move to given session, rehydrating it if parked
+	 * @return future of the state after the move (see {@link GameActor#move(int)}), null if there is no such session
+	 */
+	public CompletableFuture<GameSnapshot> move(long id, int houseNum) {
+		final Shard shard = shardOf(id);
+		synchronized (shard) {
+			Session session = shard.hot.get(id);
+			if (session == null) {
+				session = shard.parked.remove(id);
+				if (session == null) {
+					return null;
+				}
+				unpark(shard, id, session);
+				shard.hot.put(id, session);
+			}
+			session.lastAccessMillis = System.currentTimeMillis();
+			// Queued under the shard lock, so the session cannot be parked before the move is applied
+			final CompletableFuture<GameSnapshot> result = session.actor.move(houseNum);
+			enforceLimits(shard);
+			return result;
+		}
+	}
+
+	/**
+	 * @return true if given session existed and was removed
+	 */
+	public boolean remove(long id) {
+		final Shard shard = shardOf(id);
+		synchronized (shard) {
+			Session session = shard.hot.get(id);
+			final boolean hot = session != null;
+			if (!hot) {
+				session = shard.parked.get(id);
+				if (session == null) {
+					return false;
+				}
+			}
+			// Journaled before removing, so that a session whose record failed stays
+			journal(id, 0, 0, MoveJournal.TYPE_REMOVE);
+			if (hot) {
+				shard.hot.remove(id);
+				shard.heapBytes -= hotBytes(session.rules);
+			} else {
+				shard.parked.remove(id);
+				shard.release(session);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Removes sessions not accessed within their time to live
+	 * @return number of removed sessions
+	 * @throws UncheckedIOException - in case a removal cannot be journaled, the session stays
+	 */
+	public int evictExpired() {
+		return evictExpired(System.currentTimeMillis());
+	}
+
+	int evictExpired(long nowMillis) {
+		int evicted = 0;
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				final int before = evicted;
+				try {
+					// Journaled before removing, so that a session whose record failed stays
+					for (Iterator<Map.Entry<Long, Session>> it = shard.hot.entrySet().iterator(); it.hasNext(); ) {
+						final Map.Entry<Long, Session> entry = it.next();
+						final Session session = entry.getValue();
+						if (session.isExpired(nowMillis) && session.actor.isIdle()) {
+							journal(entry.getKey(), 0, 0, MoveJournal.TYPE_REMOVE);
+							it.remove();
+							shard.heapBytes -= hotBytes(session.rules);
+							evicted++;
+						}
+					}
+					for (Iterator<Map.Entry<Long, Session>> it = shard.parked.entrySet().iterator(); it.hasNext(); ) {
+						final Map.Entry<Long, Session> entry = it.next();
+						if (entry.getValue().isExpired(nowMillis)) {
+							journal(entry.getKey(), 0, 0, MoveJournal.TYPE_REMOVE);
+							it.remove();
+							shard.release(entry.getValue());
+							evicted++;
+						}
+					}
+				} finally {
+					shard.evicted += evicted - before;
+				}
+			}
+		}
+		return evicted;
+	}
+
+	/**
+	 * Makes sure given id is never given to a new session, e.g. id of a session lost in recovery
+	 */
+	public void reserveId(long id) {
+		nextId.accumulateAndGet(id + 1, Math::max);
+	}
+
+	/**
+	 * Puts a recovered session back, parked if its position fits a {@link PositionKey}
+	 * @param board position of the session, not retained
+	 */
+	public void restore(long id, KalahaRules rules, KalahaBoard board, long moveNumber, long ttlMillis) {
+		reserveId(id);
+		final KalahaGame game = KalahaGame.newGame(rules, PLAYER1_NAME, PLAYER2_NAME);
+		board.forkInto(game.getBoard());
+		game.publishPosition();
+		final Session session = new Session(rules, ttlMillis);
+		session.actor = new GameActor(game, actorExecutor, moveNumber, journal, id);
+		final Shard shard = shardOf(id);
+		synchronized (shard) {
+			shard.heapBytes += hotBytes(rules);
+			if (park(shard, session)) {
+				shard.parked.put(id, session);
+			} else {
+				shard.hot.put(id, session);
+			}
+			enforceLimits(shard);
+		}
+	}
+
+	/**
+	 * Visits every session, locking one shard at a time
+	 */
+	public void forEachSession(SessionVisitor visitor) {
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				for (Map.Entry<Long, Session> entry : shard.hot.entrySet()) {
+					final Session session = entry.getValue();
+					final GameSnapshot snapshot = session.actor.getSnapshot();
+					visitor.visit(entry.getKey(), session.rules, snapshot.getBoardState(), snapshot.getMoveNumber(),
+							session.ttlMillis);
+				}
+				for (Map.Entry<Long, Session> entry : shard.parked.entrySet()) {
+					final Session session = entry.getValue();
+					visitor.visit(entry.getKey(), session.rules, shard.getKey(session).toBoardState(session.rules),
+							shard.getMoveNumber(session), session.ttlMillis);
+				}
+			}
+		}
+	}
+
+	public long size() {
+		return getHotCount() + getParkedCount();
+	}
+
+	public long getHotCount() {
+		long count = 0;
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				count += shard.hot.size();
+			}
+		}
+		return count;
+	}
+
+	public long getParkedCount() {
+		long count = 0;
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				count += shard.parked.size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return estimated heap bytes of hot and parked sessions
+	 */
+	public long getHeapBytes() {
+		long bytes = 0;
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				bytes += shard.heapBytes;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return bytes allocated for off-heap slabs
+	 */
+	public long getOffHeapBytes() {
+		long bytes = 0;
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				bytes += shard.slab == null ? 0 : shard.slab.capacity();
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return number of sessions removed by time to live or memory limit so far
+	 */
+	public long getEvictedCount() {
+		long count = 0;
+		for (Shard shard : shards) {
+			synchronized (shard) {
+				count += shard.evicted;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return "hot=" + getHotCount() + " parked=" + getParkedCount() + " evicted=" + getEvictedCount()
+				+ " heapBytes=" + getHeapBytes() + " offHeapBytes=" + getOffHeapBytes();
+	}
+
+	private Shard shardOf(long id) {
+		// Ids are sequential, mix them so that neighbours do not share a shard by pattern
+		final long mixed = id * 0x9E3779B97F4A7C15L;
+		return shards[(int) (mixed >>> 32) & (shards.length - 1)];
+	}
+
+	private void journal(long id, long hash, long moveNumber, int word) {
+		if (journal != null) {
+			try {
+				journal.append(id, hash, moveNumber, word);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static int hotBytes(KalahaRules rules) {
+		return HOT_SESSION_BYTES + rules.getPitsCount() * HOT_SESSION_PIT_BYTES;
+	}
+
+	/**
+	 * Parks least recently used idle sessions beyond the hot limit, then evicts least recently used
+	 * parked sessions beyond the memory limit
+	 */
+	private void enforceLimits(Shard shard) {
+		for (Iterator<Map.Entry<Long, Session>> it = shard.hot.entrySet().iterator(); it.hasNext()
+				&& (shard.hot.size() > maxHotPerShard || shard.getBytes() > maxBytesPerShard); ) {
+			final Map.Entry<Long, Session> entry = it.next();
+			final Session session = entry.getValue();
+			if (session.actor.isIdle() && park(shard, session)) {
+				it.remove();
+				shard.parked.put(entry.getKey(), session);
+			}
+		}
+		for (Iterator<Map.Entry<Long, Session>> it = shard.parked.entrySet().iterator(); it.hasNext()
+				&& shard.getBytes() > maxBytesPerShard; ) {
+			final Map.Entry<Long, Session> entry = it.next();
+			if (!tryJournalRemove(entry.getKey())) {
+				// Over the limit until the journal works again, a session evicted unjournaled would come back on recovery
+				break;
+			}
+			it.remove();
+			shard.release(entry.getValue());
+			shard.evicted++;
+		}
+	}
+
+	/**
+	 * Journals removal of given session without failing the create or move enforcing limits
+	 * @return false if the record could not be appended
+	 */
+	private boolean tryJournalRemove(long id) {
+		try {
+			journal(id, 0, 0, MoveJournal.TYPE_REMOVE);
+			return true;
+		} catch (UncheckedIOException | IllegalStateException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return false if the position does not fit a {@link PositionKey} or the actor failed, and the session stays hot
+	 */
+	private boolean park(Shard shard, Session session) {
+		if (session.actor.isFailed()) {
+			// Its published moves are not journaled, parking would drop the failure and accept moves again
+			return false;
+		}
+		final GameSnapshot snapshot = session.actor.getSnapshot();
+		final PositionKey key;
+		try {
+			key = PositionKey.of(snapshot.getPosition().toBoard());
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		session.actor = null;
+		shard.heapBytes += PARKED_SESSION_BYTES - hotBytes(session.rules);
+		if (offHeap) {
+			session.slot = shard.allocateSlot();
+			shard.slab.putLong(session.slot * OFF_HEAP_RECORD_BYTES, key.getHigh());
+			shard.slab.putLong(session.slot * OFF_HEAP_RECORD_BYTES + Long.BYTES, key.getLow());
+			shard.slab.putLong(session.slot * OFF_HEAP_RECORD_BYTES + 2 * Long.BYTES, snapshot.getMoveNumber());
+		} else {
+			session.keyHigh = key.getHigh();
+			session.keyLow = key.getLow();
+			session.moveNumber = snapshot.getMoveNumber();
+		}
+		return true;
+	}
+
+	private void unpark(Shard shard, long id, Session session) {
+		final KalahaGame game = KalahaGame.newGame(session.rules, PLAYER1_NAME, PLAYER2_NAME);
+		shard.getKey(session).applyTo(game.getBoard());
+		game.publishPosition();
+		final long moveNumber = shard.getMoveNumber(session);
+		shard.release(session);
+		session.actor = new GameActor(game, actorExecutor, moveNumber, journal, id);
+		shard.heapBytes += hotBytes(session.rules);
+	}
+
+	private static final class Session {
+
+		private final KalahaRules rules;
+		private final long ttlMillis;
+		private long lastAccessMillis = System.currentTimeMillis();
+		/** Live game, null while parked */
+		private GameActor actor;
+		/** Parked state on heap */
+		private long keyHigh;
+		private long keyLow;
+		private long moveNumber;
+		/** Parked state record in the off-heap slab, -1 if none */
+		private int slot = -1;
+
+		Session(KalahaRules rules, long ttlMillis) {
+			this.rules = rules;
+			this.ttlMillis = ttlMillis;
+		}
+
+		boolean isExpired(long nowMillis) {
+			return nowMillis - lastAccessMillis >= ttlMillis;
+		}
+	}
+
+	/**
+	 * Sessions of one shard, guarded by the shard monitor
+	 */
+	private static final class Shard {
+
+		private final LinkedHashMap<Long, Session> hot = new LinkedHashMap<>(16, 0.75f, true);
+		private final LinkedHashMap<Long, Session> parked = new LinkedHashMap<>(16, 0.75f, true);
+		private long heapBytes;
+		private long evicted;
+		/** Off-heap records of parked sessions, with a stack of freed slots */
+		private ByteBuffer slab;
+		private int slabRecords;
+		private int[] freeSlots = new int[0];
+		private int freeSlotsCount;
+
+		long getBytes() {
+			return heapBytes + (long) (slabRecords - freeSlotsCount) * OFF_HEAP_RECORD_BYTES;
+		}
+
+		int allocateSlot() {
+			if (freeSlotsCount > 0) {
+				return freeSlots[--freeSlotsCount];
+			}
+			if (slab == null || (slabRecords + 1) * OFF_HEAP_RECORD_BYTES > slab.capacity()) {
+				final int records = slab == null ? INITIAL_SLAB_RECORDS : slabRecords * 2;
+				Preconditions.checkState((long) records * OFF_HEAP_RECORD_BYTES <= Integer.MAX_VALUE, "Off-heap slab is full");
+				final ByteBuffer grown = ByteBuffer.allocateDirect(records * OFF_HEAP_RECORD_BYTES);
+				if (slab != null) {
+					slab.clear();
+					grown.put(slab);
+				}
+				slab = grown;
+			}
+			return slabRecords++;
+		}
+
+		/**
+		 * Frees off-heap record and parked bytes of given session
+		 */
+		void release(Session session) {
+			if (session.slot >= 0) {
+				if (freeSlotsCount == freeSlots.length) {
+					freeSlots = Arrays.copyOf(freeSlots, Math.max(16, freeSlotsCount * 2));
+				}
+				freeSlots[freeSlotsCount++] = session.slot;
+				session.slot = -1;
+			}
+			if (session.actor == null) {
+				heapBytes -= PARKED_SESSION_BYTES;
+			}
+		}
+
+		PositionKey getKey(Session session) {
+			return session.slot < 0 ? new PositionKey(session.keyHigh, session.keyLow) : new PositionKey(
+					slab.getLong(session.slot * OFF_HEAP_RECORD_BYTES), slab.getLong(session.slot * OFF_HEAP_RECORD_BYTES + Long.BYTES));
+		}
+
+		long getMoveNumber(Session session) {
+			return session.slot < 0 ? session.moveNumber : slab.getLong(session.slot * OFF_HEAP_RECORD_BYTES + 2 * Long.BYTES);
+		}
+	}
+}
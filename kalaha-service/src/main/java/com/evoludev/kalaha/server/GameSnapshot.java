@@ -0,0 +1,77 @@
+package com.evoludev.kalaha.server;
+
+import com.evoludev.kalaha.game.GamePosition;
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+
+/**
+ * Immutable state of a hosted game, safe to share with any number of readers
+ */
+public final class GameSnapshot {
+
+	private final GamePosition position;
+	private final long moveNumber;
+
+	private GameSnapshot(GamePosition position, long moveNumber) {
+		this.position = position;
+		this.moveNumber = moveNumber;
+	}
+
+	/**
+	 * @param moveNumber number of moves played so far
+	 */
+	public static GameSnapshot of(KalahaGame game, long moveNumber) {
+		return new GameSnapshot(game.getPosition(), moveNumber);
+	}
+
+	/**
+	 * @param moveNumber number of moves played so far
+	 */
+	public static GameSnapshot of(KalahaBoard board, long moveNumber) {
+		return new GameSnapshot(GamePosition.of(board), moveNumber);
+	}
+
+	public GamePosition getPosition() {
+		return position;
+	}
+
+	public KalahaRules getRules() {
+		return position.getRules();
+	}
+
+	public String getBoardState() {
+		return position.getBoardState();
+	}
+
+	public int getPlayerToMove() {
+		return position.getPlayerToMove();
+	}
+
+	/**
+	 * @return bitmask of house numbers the player to move can sow from, 0 if game has finished
+	 */
+	public int getLegalMoves() {
+		return position.getLegalMoves();
+	}
+
+	public boolean isGameFinished() {
+		return position.isGameFinished();
+	}
+
+	/**
+	 * @return index of the winning player, -1 on draw or while the game is in progress
+	 */
+	public int getWinner() {
+		return position.isGameFinished() ? position.getWinningPlayer() : -1;
+	}
+
+	public long getMoveNumber() {
+		return moveNumber;
+	}
+
+	@Override
+	public String toString() {
+		return "#" + moveNumber + " " + position;
+	}
+}
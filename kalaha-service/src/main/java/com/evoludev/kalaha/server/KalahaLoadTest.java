@@ -0,0 +1,210 @@
+package com.evoludev.kalaha.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Load-test client of {@link KalahaServer}. Opens given number of game sessions, then threads keep playing
+ * random legal moves in them, starting a new game in place of every finished one. Reports request
+ * throughput and latency percentiles. Without a port, an in-process server on localhost is tested.
+ * <p>
+ * Usage: <i>KalahaLoadTest [-host H] [-port N] [-sessions N] [-threads N] [-seconds N]</i>
+ */
+public class KalahaLoadTest {
+
+	private final String baseUrl;
+	private final long[] sessions;
+	private final int threads;
+	private final long durationNanos;
+
+	public KalahaLoadTest(String baseUrl, int sessions, int threads, long durationMillis) {
+		Preconditions.checkArgument(sessions >= threads, "Every thread needs a session, got " + sessions
+				+ " sessions for " + threads + " threads");
+		this.baseUrl = baseUrl;
+		this.sessions = new long[sessions];
+		this.threads = threads;
+		this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+	}
+
+	public static void main(String[] args) throws IOException {
+		String host = "localhost";
+		int port = 0;
+		int sessions = 10000;
+		int threads = 64;
+		int seconds = 10;
+		for (int arg = 0; arg + 1 < args.length; arg += 2) {
+			switch (args[arg]) {
+			case "-host":
+				host = args[arg + 1];
+				break;
+			case "-port":
+				port = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-sessions":
+				sessions = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-threads":
+				threads = Integer.parseInt(args[arg + 1]);
+				break;
+			case "-seconds":
+				seconds = Integer.parseInt(args[arg + 1]);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown option: " + args[arg]);
+			}
+		}
+		KalahaServer server = null;
+		if (port == 0) {
+			server = new KalahaServer(new InetSocketAddress(host, 0));
+			server.start();
+			port = server.getPort();
+		}
+		System.setProperty("http.maxConnections", String.valueOf(threads));
+		try {
+			System.out.println(new KalahaLoadTest("http://" + host + ":" + port, sessions, threads,
+					TimeUnit.SECONDS.toMillis(seconds)).run());
+		} finally {
+			if (server != null) {
+				server.stop();
+			}
+		}
+	}
+
+	/**
+	 * Opens sessions and plays until time is up
+	 * @return throughput and latency summary
+	 */
+	public String run() throws IOException {
+		for (int session = 0; session < sessions.length; session++) {
+			sessions[session] = createGame();
+		}
+		final long[][] latencies = new long[threads][];
+		final int[] errors = new int[threads];
+		final CountDownLatch done = new CountDownLatch(threads);
+		final long start = System.nanoTime();
+		for (int id = 0; id < threads; id++) {
+			final int thread = id;
+			Thread worker = new Thread(() -> {
+				try {
+					latencies[thread] = play(thread, start, errors);
+				} finally {
+					done.countDown();
+				}
+			}, "kalaha-load-" + id);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		Uninterruptibles.awaitUninterruptibly(done);
+		final long elapsed = System.nanoTime() - start;
+
+		int count = 0;
+		for (long[] threadLatencies : latencies) {
+			count += threadLatencies.length;
+		}
+		final long[] all = new long[count];
+		int offset = 0;
+		for (long[] threadLatencies : latencies) {
+			System.arraycopy(threadLatencies, 0, all, offset, threadLatencies.length);
+			offset += threadLatencies.length;
+		}
+		Arrays.sort(all);
+		return String.format(Locale.ROOT, "sessions=%d threads=%d requests=%d errors=%d requests/s=%.0f"
+				+ " p50=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms", sessions.length, threads, count,
+				Arrays.stream(errors).sum(), count * (double) TimeUnit.SECONDS.toNanos(1) / elapsed,
+				percentile(all, 0.5), percentile(all, 0.99), percentile(all, 0.999), percentile(all, 1));
+	}
+
+	/**
+	 * Plays moves in sessions with index of given thread modulo thread count, each move reads game state first
+	 * @return latency of every state and move request in nanoseconds
+	 */
+	private long[] play(int thread, long start, int[] errors) {
+		final SplittableRandom random = new SplittableRandom(thread);
+		long[] latencies = new long[1024];
+		int count = 0;
+		for (int session = thread; System.nanoTime() - start < durationNanos; ) {
+			String path = "/games/" + sessions[session];
+			for (int request = 0; request < 2 && path != null; request++) {
+				final long requestStart = System.nanoTime();
+				try {
+					if (request == 0) {
+						final int[] legalMoves = parseLegalMoves(request("GET", path));
+						path = legalMoves.length == 0 ? null
+								: path + "/moves?house=" + legalMoves[random.nextInt(legalMoves.length)];
+					} else {
+						request("POST", path);
+					}
+				} catch (IOException e) {
+					errors[thread]++;
+					path = null;
+				}
+				if (count == latencies.length) {
+					latencies = Arrays.copyOf(latencies, count * 2);
+				}
+				latencies[count++] = System.nanoTime() - requestStart;
+			}
+			if (path == null) {
+				try {
+					sessions[session] = createGame();
+				} catch (IOException e) {
+					errors[thread]++;
+				}
+			}
+			session += threads;
+			if (session >= sessions.length) {
+				session = thread;
+			}
+		}
+		return Arrays.copyOf(latencies, count);
+	}
+
+	private long createGame() throws IOException {
+		final String json = request("POST", "/games");
+		final int from = json.indexOf("\"id\":") + 5;
+		return Long.parseLong(json.substring(from, json.indexOf(',', from)));
+	}
+
+	private String request(String method, String path) throws IOException {
+		final HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		connection.setRequestMethod(method);
+		final int status = connection.getResponseCode();
+		try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			final ByteArrayOutputStream body = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[512];
+			for (int read; in != null && (read = in.read(buffer)) > 0; ) {
+				body.write(buffer, 0, read);
+			}
+			if (status >= 400) {
+				throw new IOException("HTTP " + status + ": " + body.toString(StandardCharsets.UTF_8.name()));
+			}
+			return body.toString(StandardCharsets.UTF_8.name());
+		}
+	}
+
+	static int[] parseLegalMoves(String json) {
+		final int from = json.indexOf("\"legalMoves\":[") + 14;
+		final String moves = json.substring(from, json.indexOf(']', from));
+		return moves.isEmpty() ? new int[0] : Arrays.stream(moves.split(",")).mapToInt(Integer::parseInt).toArray();
+	}
+
+	private static double percentile(long[] sorted, double fraction) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		final int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+		return sorted[Math.max(0, index)] / 1e6;
+	}
+}
@@ -0,0 +1,346 @@
+package com.evoludev.kalaha.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.evoludev.kalaha.game.KalahaRules;
+import com.evoludev.kalaha.metrics.KalahaMetrics;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Headless multi-game service on the JDK {@link HttpServer}. All responses are JSON.
+ * <ul>
+ * <li><i>POST /games[?houses=N&amp;seeds=N]</i> - creates a game</li>
+ * <li><i>GET /games/{id}</i> - game state</li>
+ * <li><i>POST /games/{id}/moves?house=N</i> - sows from given house of the player to move</li>
+ * <li><i>DELETE /games/{id}</i> - ends the session</li>
+ * <li><i>GET /sessions</i> - hot, parked and evicted session counts and memory use</li>
+ * <li><i>GET /metrics</i> - {@link KalahaMetrics} in Prometheus text format</li>
+ * </ul>
+ * Game state holds board state, player to move, legal house numbers and, once finished, the winner (-1 on draw).
+ * Requests run on virtual threads when the JVM has them, on a fixed pool of platform threads otherwise.
+ * Every game is owned by a {@link GameActor}: moves are queued to it and state is read from its snapshots.
+ * Idle games are parked and expired by a {@link GameSessionStore}.
+ * With a journal directory, sessions are journaled by a {@link MoveJournal}, checkpointed periodically
+ * and recovered on start, see {@link SessionCheckpoint}.
+ * The main method enables metrics and their MBean, unless <i>-Dkalaha.metrics=false</i> is given, and turns off
+ * Nagle's algorithm of the JDK server, unless <i>-Dsun.net.httpserver.nodelay</i> is given. Embedders should launch
+ * with <i>-Dsun.net.httpserver.nodelay=true</i>.
+ * <p>
+ * Usage: <i>KalahaServer [port] [max hot sessions] [offheap|onheap] [journal directory]</i>
+ */
+public class KalahaServer {
+
+	public static final int DEFAULT_PORT = 8080;
+
+	public static final int DEFAULT_MAX_HOT_SESSIONS = 100000;
+	public static final long DEFAULT_MAX_SESSION_BYTES = 1L << 30;
+	public static final long DEFAULT_SESSION_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private static final int BACKLOG = 4096;
+	private static final long EVICTION_PERIOD_SECONDS = 10;
+	private static final long CHECKPOINT_PERIOD_SECONDS = 60;
+	private static final String CHECKPOINT_FILE = "sessions.checkpoint";
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	/** Shared by all game actors */
+	private final ForkJoinPool actorExecutor = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+			ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+	private final GameSessionStore sessions;
+	private final ScheduledExecutorService evictionExecutor = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kalaha-sessions-%d").build());
+	private MoveJournal journal;
+	private Path checkpointFile;
+
+	public KalahaServer(InetSocketAddress address) throws IOException {
+		this(address, DEFAULT_MAX_HOT_SESSIONS, DEFAULT_MAX_SESSION_BYTES, DEFAULT_SESSION_TTL_MILLIS, false);
+	}
+
+	/**
+	 * @param address address to listen on
+	 * @param maxHotSessions sessions kept as live games, others are parked
+	 * @param maxSessionBytes estimated memory of all sessions, least recently used are evicted beyond it
+	 * @param sessionTtlMillis time to live of sessions without requests
+	 * @param offHeap true to park sessions off heap
+	 */
+	public KalahaServer(InetSocketAddress address, int maxHotSessions, long maxSessionBytes, long sessionTtlMillis,
+			boolean offHeap) throws IOException {
+		this.sessions = new GameSessionStore(4 * Runtime.getRuntime().availableProcessors(), maxHotSessions,
+				maxSessionBytes, sessionTtlMillis, offHeap, actorExecutor);
+		this.server = HttpServer.create(address, BACKLOG);
+		this.executor = newRequestExecutor();
+		server.setExecutor(executor);
+		server.createContext("/games", this::handle);
+		server.createContext("/sessions", this::handleSessions);
+		server.createContext("/metrics", this::handleMetrics);
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int maxHotSessions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_HOT_SESSIONS;
+		boolean offHeap = args.length > 2 && "offheap".equals(args[2]);
+		// Headers and body go out in separate writes, Nagle's algorithm would hold the body back until the client's delayed ACK.
+		// Read once by the JDK server, so set before the first server is created
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		if (System.getProperty("kalaha.metrics") == null) {
+			KalahaMetrics.setEnabled(true);
+		}
+		KalahaMetrics.registerMBean();
+		KalahaServer server = new KalahaServer(new InetSocketAddress(port), maxHotSessions, DEFAULT_MAX_SESSION_BYTES,
+				DEFAULT_SESSION_TTL_MILLIS, offHeap);
+		if (args.length > 3) {
+			System.out.println("Recovered " + server.recover(Paths.get(args[3])) + " sessions from " + args[3]);
+		}
+		server.start();
+		System.out.println("Kalaha service listening on port " + server.getPort());
+	}
+
+	/**
+	 * @return virtual thread per task executor on Java 21+, fixed pool of platform threads before
+	 */
+	static ExecutorService newRequestExecutor() {
+		try {
+			// Looked up reflectively, the service is built for Java 8
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(4 * Runtime.getRuntime().availableProcessors(),
+					new ThreadFactoryBuilder().setDaemon(true).setNameFormat("kalaha-http-%d").build());
+		}
+	}
+
+	/**
+	 * Restores sessions from the checkpoint and journal in given directory, then journals sessions there.
+	 * Must be called before {@link #start()}.
+	 * @return number of recovered sessions
+	 */
+	public int recover(Path directory) throws IOException {
+		Preconditions.checkState(journal == null, "Journal is already open");
+		journal = MoveJournal.open(directory);
+		checkpointFile = directory.resolve(CHECKPOINT_FILE);
+		sessions.setJournal(journal);
+		final int recovered = SessionCheckpoint.recover(sessions, checkpointFile, DEFAULT_SESSION_TTL_MILLIS);
+		checkpoint();
+		return recovered;
+	}
+
+	public void start() {
+		server.start();
+		evictionExecutor.scheduleWithFixedDelay(this::evictExpired, EVICTION_PERIOD_SECONDS, EVICTION_PERIOD_SECONDS,
+				TimeUnit.SECONDS);
+		if (journal != null) {
+			evictionExecutor.scheduleWithFixedDelay(this::checkpoint, CHECKPOINT_PERIOD_SECONDS, CHECKPOINT_PERIOD_SECONDS,
+					TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Stops accepting requests and releases request threads, forcing journaled moves to disk
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+		evictionExecutor.shutdownNow();
+		actorExecutor.shutdownNow();
+		if (journal != null) {
+			try {
+				journal.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * @return number of hosted games
+	 */
+	public long getGamesCount() {
+		return sessions.size();
+	}
+
+	public GameSessionStore getSessions() {
+		return sessions;
+	}
+
+	private void checkpoint() {
+		try {
+			SessionCheckpoint.write(sessions, checkpointFile);
+		} catch (IOException e) {
+			// Journal keeps growing until a later checkpoint succeeds, nothing is lost meanwhile
+			System.err.println("Session checkpoint failed: " + e);
+		}
+	}
+
+	private void evictExpired() {
+		try {
+			sessions.evictExpired();
+		} catch (RuntimeException e) {
+			// Thrown out of the scheduled task it would cancel eviction for good, the next round retries
+			System.err.println("Session eviction failed: " + e);
+		}
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		boolean closeExchange = true;
+		try {
+			final String method = exchange.getRequestMethod();
+			final URI uri = exchange.getRequestURI();
+			final String[] path = uri.getPath().split("/");
+			// Contexts match by prefix, /gamesxyz reaches this handler too
+			if (path.length < 2 || !"games".equals(path[1])) {
+				respond(exchange, 404, error("No such resource: " + uri.getPath()));
+				return;
+			}
+			if (path.length == 2 && "POST".equals(method)) {
+				final String houses = getQueryParam(uri, "houses");
+				final String seeds = getQueryParam(uri, "seeds");
+				final KalahaRules rules = houses == null && seeds == null ? KalahaRules.DEFAULT : KalahaRules.of(
+						houses == null ? KalahaRules.DEFAULT.getHousesPerPlayer() : Integer.parseInt(houses),
+						seeds == null ? KalahaRules.DEFAULT.getInitialSeeds() : Integer.parseInt(seeds));
+				final long id = sessions.create(rules);
+				respond(exchange, 201, toJson(id, sessions.getSnapshot(id)));
+				return;
+			}
+			final long id = path.length >= 3 ? Long.parseLong(path[2]) : 0;
+			if (path.length == 3 && "GET".equals(method)) {
+				final GameSnapshot snapshot = sessions.getSnapshot(id);
+				respond(exchange, snapshot == null ? 404 : 200, snapshot == null ? noSuchGame(uri) : toJson(id, snapshot));
+			} else if (path.length == 3 && "DELETE".equals(method)) {
+				respond(exchange, sessions.remove(id) ? 204 : 404, null);
+			} else if (path.length == 4 && "moves".equals(path[3]) && "POST".equals(method)) {
+				final String house = getQueryParam(uri, "house");
+				if (house == null) {
+					respond(exchange, 400, error("Missing house parameter"));
+					return;
+				}
+				final long start = KalahaMetrics.startTimer();
+				final CompletableFuture<GameSnapshot> move = sessions.move(id, Integer.parseInt(house));
+				if (move == null) {
+					respond(exchange, 404, noSuchGame(uri));
+					return;
+				}
+				// Response is sent once the actor has applied the move, the request thread is not held meanwhile
+				move.whenCompleteAsync((snapshot, error) -> {
+					try {
+						KalahaMetrics.recordMoveLatency(start);
+						if (error == null) {
+							respond(exchange, 200, toJson(id, snapshot));
+						} else {
+							respond(exchange, 400, error(error.getMessage()));
+						}
+					} catch (IOException e) {
+						// Client has gone, nothing to respond to
+					} finally {
+						exchange.close();
+					}
+				}, executor);
+				closeExchange = false;
+			} else {
+				respond(exchange, 405, error("Unsupported request: " + method + " " + uri.getPath()));
+			}
+		} catch (IllegalArgumentException | IllegalStateException e) {
+			respond(exchange, 400, error(e.getMessage()));
+		} catch (UncheckedIOException e) {
+			// Session could not be journaled
+			respond(exchange, 503, error(e.getMessage()));
+		} finally {
+			if (closeExchange) {
+				exchange.close();
+			}
+		}
+	}
+
+	private void handleSessions(HttpExchange exchange) throws IOException {
+		try {
+			respond(exchange, 200, "{\"hot\":" + sessions.getHotCount() + ",\"parked\":" + sessions.getParkedCount()
+					+ ",\"evicted\":" + sessions.getEvictedCount() + ",\"heapBytes\":" + sessions.getHeapBytes()
+					+ ",\"offHeapBytes\":" + sessions.getOffHeapBytes() + "}");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		try {
+			final byte[] body = KalahaMetrics.scrape().getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static String getQueryParam(URI uri, String name) {
+		final String query = uri.getRawQuery();
+		if (query != null) {
+			for (String param : query.split("&")) {
+				if (param.startsWith(name + "=")) {
+					return param.substring(name.length() + 1);
+				}
+			}
+		}
+		return null;
+	}
+
+	private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+		if (json == null) {
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	static String toJson(long id, GameSnapshot snapshot) {
+		final StringBuilder json = new StringBuilder(160);
+		json.append("{\"id\":").append(id)
+				.append(",\"rules\":\"").append(snapshot.getRules())
+				.append("\",\"state\":\"").append(snapshot.getBoardState())
+				.append("\",\"playerToMove\":").append(snapshot.getPlayerToMove())
+				.append(",\"legalMoves\":[");
+		for (int legal = snapshot.getLegalMoves(); legal != 0; legal &= legal - 1) {
+			json.append(Integer.numberOfTrailingZeros(legal)).append(legal == Integer.lowestOneBit(legal) ? "" : ",");
+		}
+		json.append("],\"finished\":").append(snapshot.isGameFinished());
+		if (snapshot.isGameFinished()) {
+			json.append(",\"winner\":").append(snapshot.getWinner());
+		}
+		return json.append('}').toString();
+	}
+
+	private static String noSuchGame(URI uri) {
+		return error("No such game: " + uri.getPath());
+	}
+
+	private static String error(String message) {
+		return "{\"error\":\"" + String.valueOf(message).replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+	}
+}
@@ -0,0 +1,380 @@
+package com.evoludev.kalaha.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.evoludev.kalaha.game.KalahaRules;
+import com.google.common.base.Preconditions;
+
+/**
+ * Append-only journal of game sessions: creation, every accepted move and removal, as fixed-size records
+ * in memory-mapped segment files. Appending only writes to the mapped segment; a background thread forces
+ * written records to disk, each force covering every record appended meanwhile (group commit).
+ * {@link #whenDurable(long)} tells when a record has been forced. If forcing fails, the journal is failed:
+ * waiting and later durability futures complete exceptionally and appends are rejected.
+ * <p>
+ * Record layout: game id, position hash after the record, move number, type word, checksum.
+ * A record with a wrong checksum ends the journal, which covers records torn by a crash and unwritten space.
+ * Positions are global record numbers, segment <i>N</i> holds records from <i>N * recordsPerSegment</i> on.
+ */
+public final class MoveJournal implements Closeable {
+
+	public static final int RECORD_BYTES = 3 * Long.BYTES + 2 * Integer.BYTES;
+	public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+
+	public static final int TYPE_CREATE = 1;
+	public static final int TYPE_MOVE = 2;
+	public static final int TYPE_REMOVE = 3;
+
+	private static final String SEGMENT_PREFIX = "journal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final long CHECKSUM_SALT = 0x4B4C484A524E4C31L;
+
+	/**
+	 * Receives journal records in order
+	 */
+	public interface RecordVisitor {
+
+		/**
+		 * @param word type in bits 0-3; for moves house number in bits 4-11; for creation houses per player
+		 * in bits 4-11 and initial seeds in bits 12-31
+		 */
+		void visit(long position, long gameId, long hash, long moveNumber, int word);
+	}
+
+	private final Path directory;
+	private final int recordsPerSegment;
+	/** Segments written to but maybe not forced yet, by segment number */
+	private final TreeMap<Long, MappedByteBuffer> openSegments = new TreeMap<>();
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>();
+	private final Thread flusher;
+	private long position;
+	private long durablePosition;
+	private boolean closed;
+	/** Failure of forcing records to disk, nothing is durable after it */
+	private IOException failure;
+
+	private MoveJournal(Path directory, int segmentBytes) throws IOException {
+		Preconditions.checkArgument(segmentBytes >= RECORD_BYTES, "Segment must hold at least one record, got: " + segmentBytes);
+		this.directory = directory;
+		this.recordsPerSegment = segmentBytes / RECORD_BYTES;
+		Files.createDirectories(directory);
+		this.position = findEnd();
+		this.durablePosition = position;
+		this.flusher = new Thread(this::flushLoop, "kalaha-journal-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Opens journal in given directory, appending after its last valid record
+	 */
+	public static MoveJournal open(Path directory) throws IOException {
+		return open(directory, DEFAULT_SEGMENT_BYTES);
+	}
+
+	public static MoveJournal open(Path directory, int segmentBytes) throws IOException {
+		return new MoveJournal(directory, segmentBytes);
+	}
+
+	/**
+	 * @return word of a creation record
+	 */
+	public static int createWord(KalahaRules rules) {
+		return TYPE_CREATE | rules.getHousesPerPlayer() << 4 | rules.getInitialSeeds() << 12;
+	}
+
+	/**
+	 * @return word of a move record
+	 */
+	public static int moveWord(int houseNum) {
+		return TYPE_MOVE | houseNum << 4;
+	}
+
+	public static int getType(int word) {
+		return word & 0xF;
+	}
+
+	public static int getHouse(int word) {
+		return word >>> 4 & 0xFF;
+	}
+
+	public static KalahaRules getRules(int word) {
+		return KalahaRules.of(word >>> 4 & 0xFF, word >>> 12);
+	}
+
+	/**
+	 * Writes a record to the mapped segment
+	 * @return position after the record, see {@link #whenDurable(long)}
+	 */
+	public synchronized long append(long gameId, long hash, long moveNumber, int word) throws IOException {
+		Preconditions.checkState(!closed, "Journal is closed");
+		if (failure != null) {
+			throw new IOException("Journal failed", failure);
+		}
+		final MappedByteBuffer segment = getSegment(position / recordsPerSegment);
+		final int offset = (int) (position % recordsPerSegment) * RECORD_BYTES;
+		segment.putLong(offset, gameId);
+		segment.putLong(offset + Long.BYTES, hash);
+		segment.putLong(offset + 2 * Long.BYTES, moveNumber);
+		segment.putInt(offset + 3 * Long.BYTES, word);
+		segment.putInt(offset + 3 * Long.BYTES + Integer.BYTES, checksum(gameId, hash, moveNumber, word));
+		position++;
+		notifyAll();
+		return position;
+	}
+
+	/**
+	 * @return position after the last appended record
+	 */
+	public synchronized long getPosition() {
+		return position;
+	}
+
+	/**
+	 * @return future completed once all records before given position are forced to disk,
+	 * exceptionally if the journal fails or is closed first
+	 */
+	public synchronized CompletableFuture<Void> whenDurable(long position) {
+		final CompletableFuture<Void> future = new CompletableFuture<>();
+		if (position <= durablePosition) {
+			future.complete(null);
+		} else if (failure != null) {
+			future.completeExceptionally(failure);
+		} else if (closed && !flusher.isAlive()) {
+			future.completeExceptionally(new IOException("Journal closed before records were forced"));
+		} else {
+			waiters.add(new Waiter(position, future));
+		}
+		return future;
+	}
+
+	/**
+	 * Reads records from given position to the end of the journal
+	 * @return position after the last valid record
+	 */
+	public long replay(long from, RecordVisitor visitor) throws IOException {
+		final long end = getPosition();
+		long at = from;
+		while (at < end) {
+			final long segmentNumber = at / recordsPerSegment;
+			MappedByteBuffer segment;
+			synchronized (this) {
+				segment = openSegments.get(segmentNumber);
+			}
+			if (segment == null) {
+				// Completed segment, mapped for this replay only
+				segment = mapSegment(segmentNumber);
+			}
+			for (; at < end && at / recordsPerSegment == segmentNumber; at++) {
+				final int offset = (int) (at % recordsPerSegment) * RECORD_BYTES;
+				Preconditions.checkState(isValid(segment, offset), "Corrupt journal record at position " + at);
+				visitor.visit(at, segment.getLong(offset), segment.getLong(offset + Long.BYTES),
+						segment.getLong(offset + 2 * Long.BYTES), segment.getInt(offset + 3 * Long.BYTES));
+			}
+		}
+		return at;
+	}
+
+	/**
+	 * Deletes segments holding only records before given position, after a checkpoint covers them
+	 */
+	public void deleteBefore(long position) throws IOException {
+		final long firstKept = position / recordsPerSegment;
+		for (Path file : listSegments()) {
+			final long segmentNumber = getSegmentNumber(file);
+			if (segmentNumber < firstKept) {
+				synchronized (this) {
+					openSegments.remove(segmentNumber);
+				}
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/**
+	 * Forces pending records and stops the flusher. Records it could not force fail their waiters.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			notifyAll();
+		}
+		try {
+			flusher.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		failWaiters(new IOException("Journal closed before records were forced"));
+	}
+
+	private void flushLoop() {
+		while (true) {
+			final long target;
+			final List<MappedByteBuffer> dirty = new ArrayList<>();
+			synchronized (this) {
+				while (!closed && position == durablePosition) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (position == durablePosition) {
+					return;
+				}
+				target = position;
+				final long lastSegment = (target - 1) / recordsPerSegment;
+				dirty.addAll(openSegments.subMap(durablePosition / recordsPerSegment, true, lastSegment, true).values());
+				// Segments before the last one are complete, nothing more will be written to them
+				openSegments.headMap(lastSegment).clear();
+			}
+			// Records appended while forcing are picked up by the next round
+			try {
+				for (MappedByteBuffer segment : dirty) {
+					segment.force();
+				}
+			} catch (RuntimeException e) {
+				final IOException error = new IOException("Forcing journal records failed", e);
+				synchronized (this) {
+					failure = error;
+				}
+				failWaiters(error);
+				return;
+			}
+			final List<CompletableFuture<Void>> completed = new ArrayList<>();
+			synchronized (this) {
+				durablePosition = target;
+				while (!waiters.isEmpty() && waiters.peek().position <= target) {
+					completed.add(waiters.poll().future);
+				}
+			}
+			for (CompletableFuture<Void> future : completed) {
+				future.complete(null);
+			}
+		}
+	}
+
+	private void failWaiters(IOException error) {
+		final List<CompletableFuture<Void>> failed = new ArrayList<>();
+		synchronized (this) {
+			while (!waiters.isEmpty()) {
+				failed.add(waiters.poll().future);
+			}
+		}
+		for (CompletableFuture<Void> future : failed) {
+			future.completeExceptionally(error);
+		}
+	}
+
+	private MappedByteBuffer getSegment(long segmentNumber) throws IOException {
+		MappedByteBuffer segment = openSegments.get(segmentNumber);
+		if (segment == null) {
+			segment = mapSegment(segmentNumber);
+			openSegments.put(segmentNumber, segment);
+		}
+		return segment;
+	}
+
+	private MappedByteBuffer mapSegment(long segmentNumber) throws IOException {
+		try (FileChannel channel = FileChannel.open(getSegmentFile(segmentNumber), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_BYTES);
+		}
+	}
+
+	private static boolean isValid(MappedByteBuffer segment, int offset) {
+		final int word = segment.getInt(offset + 3 * Long.BYTES);
+		return getType(word) != 0 && segment.getInt(offset + 3 * Long.BYTES + Integer.BYTES) == checksum(
+				segment.getLong(offset), segment.getLong(offset + Long.BYTES), segment.getLong(offset + 2 * Long.BYTES), word);
+	}
+
+	/**
+	 * @return position after the last valid record of the last segment
+	 */
+	private long findEnd() throws IOException {
+		long lastSegment = -1;
+		for (Path file : listSegments()) {
+			lastSegment = Math.max(lastSegment, getSegmentNumber(file));
+		}
+		if (lastSegment < 0) {
+			return 0;
+		}
+		final MappedByteBuffer segment = getSegment(lastSegment);
+		int record = 0;
+		while (record < recordsPerSegment && isValid(segment, record * RECORD_BYTES)) {
+			record++;
+		}
+		// Clear the whole tail, not only a torn record: stale records after it would be replayed once new appends
+		// close the gap. Only written bytes are cleared, so untouched pages stay clean
+		final int end = recordsPerSegment * RECORD_BYTES;
+		int offset = record * RECORD_BYTES;
+		for (; offset + Long.BYTES <= end; offset += Long.BYTES) {
+			if (segment.getLong(offset) != 0) {
+				segment.putLong(offset, 0);
+			}
+		}
+		for (; offset < end; offset++) {
+			segment.put(offset, (byte) 0);
+		}
+		return lastSegment * recordsPerSegment + record;
+	}
+
+	private List<Path> listSegments() throws IOException {
+		final List<Path> segments = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				segments.add(file);
+			}
+		}
+		return segments;
+	}
+
+	private Path getSegmentFile(long segmentNumber) {
+		return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+	}
+
+	private static long getSegmentNumber(Path file) {
+		final String name = file.getFileName().toString();
+		return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	static int checksum(long gameId, long hash, long moveNumber, int word) {
+		long mixed = gameId ^ Long.rotateLeft(hash, 21) ^ Long.rotateLeft(moveNumber, 42) ^ (long) word << 32 ^ CHECKSUM_SALT;
+		mixed = (mixed ^ mixed >>> 30) * 0xBF58476D1CE4E5B9L;
+		mixed = (mixed ^ mixed >>> 27) * 0x94D049BB133111EBL;
+		return (int) (mixed ^ mixed >>> 31);
+	}
+
+	private static final class Waiter implements Comparable<Waiter> {
+
+		private final long position;
+		private final CompletableFuture<Void> future;
+
+		Waiter(long position, CompletableFuture<Void> future) {
+			this.position = position;
+			this.future = future;
+		}
+
+		@Override
+		public int compareTo(Waiter other) {
+			return Long.compare(position, other.position);
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package com.evoludev.kalaha.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+import com.google.common.base.Preconditions;
+
+/**
+ * Checkpoints of a {@link GameSessionStore} with its {@link MoveJournal}, and recovery from them.
+ * <p>
+ * A checkpoint is taken while games go on: it notes the journal position first, then writes every session
+ * with its move number. Recovery loads the checkpoint and replays the journal from the noted position,
+ * skipping moves the checkpoint already contains, so journal segments before that position can be deleted.
+ * Every replayed move is checked against the position hash in its record.
+ */
+public final class SessionCheckpoint {
+
+	private static final long MAGIC = 0x4B4C484B43503031L; // "KLHKCP01"
+
+	private SessionCheckpoint() {
+	}
+
+	/**
+	 * Writes checkpoint of all sessions of given store to given file, replacing it atomically,
+	 * then deletes journal segments it makes obsolete. The checkpoint and its rename are forced to disk
+	 * before any segment is deleted.
+	 * @return number of sessions written
+	 */
+	public static long write(GameSessionStore store, Path file) throws IOException {
+		final MoveJournal journal = Preconditions.checkNotNull(store.getJournal(), "Session store has no journal");
+		final long start = journal.getPosition();
+		final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		final long[] sessions = new long[1];
+		final FileOutputStream output = new FileOutputStream(temp.toFile());
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output))) {
+			out.writeLong(MAGIC);
+			out.writeLong(start);
+			store.forEachSession((id, rules, boardState, moveNumber, ttlMillis) -> {
+				try {
+					out.writeBoolean(true);
+					out.writeLong(id);
+					out.writeInt(MoveJournal.createWord(rules));
+					out.writeUTF(boardState);
+					out.writeLong(moveNumber);
+					out.writeLong(ttlMillis);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				sessions[0]++;
+			});
+			out.writeBoolean(false);
+			out.flush();
+			output.getFD().sync();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		syncDirectory(file.toAbsolutePath().getParent());
+		journal.deleteBefore(start);
+		return sessions[0];
+	}
+
+	/**
+	 * Forces a rename in given directory to disk. Platforms that cannot open directories (Windows)
+	 * make renames durable by themselves.
+	 */
+	private static void syncDirectory(Path directory) throws IOException {
+		final FileChannel channel;
+		try {
+			channel = FileChannel.open(directory, StandardOpenOption.READ);
+		} catch (IOException e) {
+			return;
+		}
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Restores sessions from given checkpoint file (if it exists) and the journal of given store into the store.
+	 * A session whose journaled moves do not replay is reported and dropped, the others are restored.
+	 * @return number of restored sessions
+	 */
+	public static int recover(GameSessionStore store, Path file, long defaultTtlMillis) throws IOException {
+		final MoveJournal journal = Preconditions.checkNotNull(store.getJournal(), "Session store has no journal");
+		final Map<Long, RecoveredSession> sessions = new HashMap<>();
+		final Set<Long> dropped = new HashSet<>();
+		long start = 0;
+		if (Files.exists(file)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+				Preconditions.checkArgument(in.readLong() == MAGIC, "Not a session checkpoint: " + file);
+				start = in.readLong();
+				while (in.readBoolean()) {
+					final long id = in.readLong();
+					final KalahaRules rules = MoveJournal.getRules(in.readInt());
+					final KalahaBoard board = new KalahaBoard(rules).setBoardState(in.readUTF());
+					sessions.put(id, new RecoveredSession(board, in.readLong(), in.readLong()));
+				}
+			}
+		}
+		journal.replay(start, (position, gameId, hash, moveNumber, word) -> {
+			final RecoveredSession session = sessions.get(gameId);
+			switch (MoveJournal.getType(word)) {
+			case MoveJournal.TYPE_CREATE:
+				if (session == null && !dropped.contains(gameId)) {
+					sessions.put(gameId, new RecoveredSession(new KalahaBoard(MoveJournal.getRules(word)), 0, defaultTtlMillis));
+				}
+				break;
+			case MoveJournal.TYPE_MOVE:
+				// Moves of removed sessions and moves the checkpoint contains are skipped
+				if (session != null && moveNumber > session.moveNumber) {
+					final String error = replayMove(session, hash, moveNumber, MoveJournal.getHouse(word));
+					if (error != null) {
+						System.err.println("Dropping game " + gameId + ", " + error + " at journal position " + position);
+						sessions.remove(gameId);
+						dropped.add(gameId);
+					}
+				}
+				break;
+			case MoveJournal.TYPE_REMOVE:
+				sessions.remove(gameId);
+				dropped.remove(gameId);
+				break;
+			default:
+				throw new IllegalStateException("Unknown journal record type " + word + " at position " + position);
+			}
+		});
+		for (Map.Entry<Long, RecoveredSession> entry : sessions.entrySet()) {
+			final RecoveredSession session = entry.getValue();
+			store.restore(entry.getKey(), session.board.getRules(), session.board, session.moveNumber, session.ttlMillis);
+		}
+		for (long id : dropped) {
+			store.reserveId(id);
+		}
+		return sessions.size();
+	}
+
+	/**
+	 * @return null if the move was replayed, otherwise what is wrong with it
+	 */
+	private static String replayMove(RecoveredSession session, long hash, long moveNumber, int houseNum) {
+		if (moveNumber != session.moveNumber + 1) {
+			return "journal misses moves before move " + moveNumber;
+		}
+		if (!session.board.isLegalMove(session.board.getPlayerToMove(), houseNum)) {
+			return "move " + moveNumber + " from house " + houseNum + " is not legal";
+		}
+		session.board.makeMove(houseNum);
+		session.moveNumber = moveNumber;
+		return session.board.getHash() == hash ? null : "move " + moveNumber + " does not replay to the journaled position";
+	}
+
+	private static final class RecoveredSession {
+
+		private final KalahaBoard board;
+		private long moveNumber;
+		private final long ttlMillis;
+
+		RecoveredSession(KalahaBoard board, long moveNumber, long ttlMillis) {
+			this.board = board;
+			this.moveNumber = moveNumber;
+			this.ttlMillis = ttlMillis;
+		}
+	}
+}
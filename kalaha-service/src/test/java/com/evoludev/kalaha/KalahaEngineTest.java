@@ -0,0 +1,69 @@
+package com.evoludev.kalaha;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evoludev.kalaha.engine.OpeningBookBuilder;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class KalahaEngineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testProtocol() throws IOException {
+		String[] output = run("kalaha", "isready", "position startpos moves 2 0", "d",
+				"position rules 4 3 startpos", "d", "perft 2", "quit", "isready");
+		assertEquals("id name Kalaha", output[0]);
+		assertEquals("kalahaok", output[1]);
+		assertEquals("readyok", output[2]);
+		assertEquals("state 0|7|6|0|7|7|7|1|0|8|7|7|7|7|1", output[3]);
+		assertEquals("legal 0 1 3 4 5", output[4]);
+		assertEquals("state 0|3|3|3|3|0|3|3|3|3|0", output[5]);
+		assertEquals("legal 0 1 2 3", output[6]);
+		assertTrue(output[7], output[7].startsWith("depth 2: leaves 15, nodes 19,"));
+		assertEquals("Nothing is read after quit", 8, output.length);
+	}
+
+	@Test
+	public void testSearchAndErrors() throws IOException {
+		String[] output = run("position state 0|0|0|0|1|0|1|21|0|20|0|0|0|1|28", "go depth 12",
+				"setoption engine mcts", "go depth 3", "go nodes 500", "position startpos moves 9", "bogus");
+		assertTrue(output[0], output[0].startsWith("info depth "));
+		assertTrue(output[1], "bestmove 3".equals(output[1]) || "bestmove 5".equals(output[1]));
+		assertEquals("error MCTS search needs nodes or movetime limit", output[2]);
+		assertTrue(output[3], output[3].startsWith("info depth "));
+		assertTrue(output[4], output[4].startsWith("bestmove "));
+		assertTrue(output[5], output[5].startsWith("error "));
+		assertEquals("error Unknown command: bogus", output[6]);
+	}
+
+	@Test
+	public void testOpeningBook() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("book.bin");
+		OpeningBookBuilder.build(file, KalahaRules.DEFAULT, 1, 4);
+		String[] output = run("setoption book " + file, "go depth 4", "position startpos moves 1 0", "go depth 4",
+				"setoption book none", "go depth 2", "setoption book " + file + ".missing");
+		assertTrue(output[0], output[0].startsWith("info book depth 4 score "));
+		assertTrue(output[1], output[1].startsWith("bestmove "));
+		assertTrue("Out of book position is searched", output[2].startsWith("info depth "));
+		assertTrue(output[4], output[4].startsWith("info depth "));
+		assertTrue(output[6], output[6].startsWith("error Cannot open opening book"));
+	}
+
+	private static String[] run(String... commands) throws IOException {
+		StringWriter out = new StringWriter();
+		new KalahaEngine(new StringReader(String.join("\n", commands)), out).run();
+		return out.toString().split("\\R");
+	}
+}
@@ -0,0 +1,41 @@
+package com.evoludev.kalaha;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.evoludev.kalaha.archive.GameRecord;
+import com.evoludev.kalaha.engine.MovePolicies;
+import com.evoludev.kalaha.game.GamePosition;
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class KalahaSimulatorTest {
+
+	@Test
+	public void testSimulation() {
+		KalahaSimulator simulator = new KalahaSimulator(KalahaRules.DEFAULT, MovePolicies::greedy,
+				MovePolicies.parse("random", 1));
+		simulator.setThreads(3);
+		simulator.setSeed(1);
+		AtomicLong listened = new AtomicLong();
+		KalahaSimulator.Stats stats = simulator.run(1000, (game, firstPolicySeat, board, moves, moveList) -> {
+			assertTrue(board.isGameFinished());
+			assertEquals(KalahaRules.DEFAULT.getTotalSeeds(),
+					board.getSeeds(board.getStorePit(0)) + board.getSeeds(board.getStorePit(1)));
+			assertTrue(new GameRecord(GamePosition.initial(KalahaRules.DEFAULT), moveList, moves, GameRecord.checksum(board))
+					.verify(new KalahaBoard(KalahaRules.DEFAULT)));
+			listened.incrementAndGet();
+		});
+		assertEquals(1000, stats.getGames());
+		assertEquals(1000, listened.get());
+		assertEquals(stats.getGames(), stats.getWinsByPolicy(0) + stats.getWinsByPolicy(1) + stats.getDraws());
+		assertEquals(stats.getGames(), stats.getWinsBySeat(0) + stats.getWinsBySeat(1) + stats.getDraws());
+		assertTrue(stats.getMoves() > stats.getGames());
+		// Greedy play beats random play
+		assertTrue(stats.toString(), stats.getWinsByPolicy(0) > 2 * stats.getWinsByPolicy(1));
+	}
+}
@@ -0,0 +1,68 @@
+package com.evoludev.kalaha.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class ArchiveAnalyzerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testParallelMatchesSequential() throws IOException {
+		List<GameRecord> records = GameRecordTest.randomGames(3000, new SplittableRandom(7));
+		Path file = folder.getRoot().toPath().resolve("games.kgr");
+		try (GameRecordWriter writer = new GameRecordWriter(FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE), 2048)) {
+			for (GameRecord record : records) {
+				writer.write(record);
+			}
+		}
+		long[] blocks = GameRecordReader.listBlocks(file);
+		assertTrue(blocks.length > 20);
+		assertEquals(Files.size(file), blocks[blocks.length - 1]);
+
+		ArchiveStats expected = new ArchiveStats();
+		for (GameRecord record : records) {
+			expected.add(record, new KalahaBoard(record.getStart().getRules()));
+		}
+		ArchiveAnalyzer analyzer = new ArchiveAnalyzer();
+		analyzer.setThreads(3);
+		analyzer.setVerify(true);
+		ArchiveStats stats = analyzer.analyze(file);
+		assertEquals(expected.toString(), stats.toString());
+		assertEquals(records.size(), stats.getGames());
+
+		ArchiveStats.VariantStats standard = stats.getVariant(KalahaRules.DEFAULT);
+		assertEquals(1000, standard.getGames());
+		assertEquals(standard.getGames(), standard.getWins(0) + standard.getWins(1) + standard.getDraws());
+		long opened = 0;
+		long captures = 0;
+		for (int house = 0; house < KalahaRules.DEFAULT.getHousesPerPlayer(); house++) {
+			opened += standard.getGamesByFirstMove(house);
+			captures += standard.getCaptures(house);
+		}
+		assertEquals(standard.getGames(), opened);
+		assertEquals(standard.getCaptures(), captures);
+		long chained = 0;
+		for (int length = 1; length <= ArchiveStats.MAX_CHAIN; length++) {
+			chained += length * standard.getExtraTurnChains(length);
+		}
+		assertTrue(chained > 0 && chained <= standard.getExtraTurns());
+	}
+}
@@ -0,0 +1,112 @@
+package com.evoludev.kalaha.archive;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evoludev.kalaha.game.GamePosition;
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class GameRecordTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTripOverBlocks() throws IOException {
+		List<GameRecord> records = randomGames(300, new SplittableRandom(1));
+		records.add(GameRecord.of(GamePosition.of(new KalahaBoard(KalahaRules.DEFAULT)
+				.setBoardState("1|0|0|0|0|0|1|35|0|0|0|0|0|1|35")), 5));
+		Path file = folder.getRoot().toPath().resolve("games.kgr");
+		try (GameRecordWriter writer = new GameRecordWriter(FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE), 1024)) {
+			for (GameRecord record : records) {
+				writer.write(record);
+			}
+			assertEquals(records.size(), writer.getRecordsWritten());
+		}
+
+		try (GameRecordReader reader = GameRecordReader.open(file)) {
+			reader.setVerify(true);
+			for (GameRecord record : records) {
+				GameRecord read = reader.read();
+				assertEquals(record, read);
+				assertEquals(record.isInitialStart(), read.isInitialStart());
+			}
+			assertNull(reader.read());
+			assertEquals(records.size(), reader.getRecordsRead());
+		}
+
+		// Replays through the game and the board agree
+		GameRecord record = records.get(0);
+		KalahaGame game = record.replay("A", "B");
+		assertTrue(game.isGameFinished());
+		assertEquals(record.replay(new KalahaBoard(KalahaRules.DEFAULT)).getBoardState(), game.getBoardState());
+		assertEquals(record.getFinalChecksum(), GameRecord.checksum(game.getBoard()));
+	}
+
+	@Test
+	public void testIntegrityChecks() throws IOException {
+		GameRecord record = GameRecord.of(GamePosition.initial(KalahaRules.DEFAULT), 0, 5);
+		GameRecord wrong = new GameRecord(record.getStart(), new byte[] { 0, 4 }, 2, record.getFinalChecksum());
+		Path file = folder.getRoot().toPath().resolve("games.kgr");
+		try (GameRecordWriter writer = GameRecordWriter.create(file)) {
+			writer.write(record);
+			writer.write(wrong);
+		}
+		try (GameRecordReader reader = GameRecordReader.open(file)) {
+			assertEquals(record, reader.read());
+			assertEquals(wrong, reader.read());
+		}
+		try (GameRecordReader reader = GameRecordReader.open(file)) {
+			reader.setVerify(true);
+			reader.read();
+			reader.read();
+			fail("Record not replaying to its final position must fail verification");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Record 1"));
+		}
+
+		// Damaged block fails its CRC
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[bytes.length - 3] ^= 0x10;
+		Files.write(file, bytes);
+		try (GameRecordReader reader = GameRecordReader.open(file)) {
+			reader.read();
+			fail("Damaged block must not be read");
+		} catch (IllegalStateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Corrupt archive block"));
+		}
+	}
+
+	static List<GameRecord> randomGames(int count, SplittableRandom random) {
+		List<GameRecord> records = new ArrayList<>();
+		KalahaRules[] variants = { KalahaRules.DEFAULT, KalahaRules.of(4, 3), KalahaRules.of(30, 1) };
+		for (int game = 0; game < count; game++) {
+			KalahaBoard board = new KalahaBoard(variants[game % variants.length]);
+			List<Integer> moves = new ArrayList<>();
+			while (!board.isGameFinished()) {
+				moves.add(board.getLegalMove(random.nextInt(board.getLegalMovesCount())));
+				board.makeMove(moves.get(moves.size() - 1));
+			}
+			records.add(GameRecord.of(GamePosition.initial(board.getRules()), moves.stream().mapToInt(m -> m).toArray()));
+		}
+		return records;
+	}
+}
@@ -0,0 +1,92 @@
+package com.evoludev.kalaha.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class AlphaBetaSearchTest {
+
+	@Test
+	public void testScoreMatchesPlainMinimax() {
+		Random random = new Random(1);
+		AlphaBetaSearch search = new AlphaBetaSearch(new TranspositionTable(1));
+		for (int game = 0; game < 30; game++) {
+			KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT);
+			for (int ply = random.nextInt(20); ply > 0 && !board.isGameFinished(); ply--) {
+				board.makeMove(board.getLegalMove(random.nextInt(board.getLegalMovesCount())));
+			}
+			if (board.isGameFinished()) {
+				continue;
+			}
+			String state = board.getBoardState();
+			SearchResult result = search.search(board, SearchLimits.depth(5));
+			assertEquals(state, board.getBoardState());
+			assertEquals(minimax(board, 5), result.getScore());
+			assertTrue(board.isLegalMove(board.getPlayerToMove(), result.getBestMove()));
+		}
+	}
+
+	@Test
+	public void testSolvesEndgame() {
+		// House 3 captures 20 seeds opposite to house 4, either right away or after extra turn from house 5
+		KalahaBoard board = KalahaGame.fromBoardState("0|0|0|0|1|0|1|21|0|20|0|0|0|1|28", "A", "B").getBoard();
+		SearchResult result = search(board, SearchLimits.depth(SearchLimits.MAX_DEPTH));
+		assertEquals(43 - 29, result.getScore());
+		assertTrue(result.getBestMove() == 3 || result.getBestMove() == 5);
+		assertTrue(result.getDepth() < SearchLimits.MAX_DEPTH);
+	}
+
+	@Test
+	public void testNodeLimit() {
+		KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT);
+		SearchResult result = search(board, SearchLimits.nodes(50000));
+		assertTrue(result.getNodes() < 60000);
+		assertTrue(result.getDepth() > 0);
+		assertTrue(board.isLegalMove(0, result.getBestMove()));
+	}
+
+	@Test
+	public void testParallelSearch() {
+		AlphaBetaSearch search = new AlphaBetaSearch();
+		search.setThreads(3);
+		try {
+			KalahaBoard board = KalahaGame.fromBoardState("0|0|0|0|1|0|1|21|0|20|0|0|0|1|28", "A", "B").getBoard();
+			assertEquals(43 - 29, search.search(board, SearchLimits.depth(SearchLimits.MAX_DEPTH)).getScore());
+
+			board = new KalahaBoard(KalahaRules.DEFAULT);
+			SearchResult result = search.search(board, SearchLimits.time(200));
+			assertTrue(result.getDepth() > 0);
+			assertTrue(board.isLegalMove(0, result.getBestMove()));
+		} finally {
+			search.shutdown();
+		}
+	}
+
+	private static SearchResult search(KalahaBoard board, SearchLimits limits) {
+		return new AlphaBetaSearch().search(board, limits);
+	}
+
+	private static int minimax(KalahaBoard board, int depth) {
+		final int player = board.getPlayerToMove();
+		if (depth == 0 || board.isGameFinished()) {
+			return board.getSeeds(board.getStorePit(player)) - board.getSeeds(board.getStorePit(1 - player));
+		}
+		int best = Integer.MIN_VALUE;
+		for (int move = 0; move < board.getHousesPerPlayer(); move++) {
+			if (board.isLegalMove(player, move)) {
+				long undo = board.makeMove(move);
+				int score = minimax(board, depth - 1);
+				best = Math.max(best, board.getPlayerToMove() == player ? score : -score);
+				board.unmakeMove(undo);
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,60 @@
+package com.evoludev.kalaha.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.evoludev.kalaha.game.GamePosition;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class ComputerOpponentTest {
+
+	private final BlockingQueue<Integer> moves = new LinkedBlockingQueue<>();
+	private final ComputerOpponent computer = new ComputerOpponent(new AlphaBetaSearch(), Runnable::run);
+
+	@After
+	public void tearDown() {
+		computer.shutdown();
+	}
+
+	@Test
+	public void testCancelStopsLongSearch() throws InterruptedException {
+		GamePosition position = GamePosition.initial(KalahaRules.DEFAULT);
+		computer.setMoveTimeMillis(60000);
+		computer.play(position, moves::add);
+		computer.cancel();
+
+		// Cancelled move is never delivered and the next one does not wait for the cancelled search, started or not
+		computer.setMoveTimeMillis(20);
+		computer.play(position, moves::add);
+		Integer move = moves.poll(10, TimeUnit.SECONDS);
+		assertNotNull(move);
+		assertTrue((position.getLegalMoves() & 1 << move) != 0);
+		assertNull(moves.poll(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testPonderedReplyIsAnsweredAtOnce() throws InterruptedException, ExecutionException, TimeoutException {
+		GamePosition position = GamePosition.initial(KalahaRules.DEFAULT);
+		computer.setMoveTimeMillis(30);
+		// Five replies pass the turn (house 0 gives an extra turn), 30 ms each
+		computer.ponder(position).get(10, TimeUnit.SECONDS);
+
+		GamePosition reply = position.play(1);
+		computer.play(reply, moves::add);
+		Integer move = moves.poll(10, TimeUnit.SECONDS);
+		assertNotNull(move);
+		assertEquals(1, computer.getPonderHits());
+		assertTrue((reply.getLegalMoves() & 1 << move) != 0);
+	}
+}
@@ -0,0 +1,78 @@
+package com.evoludev.kalaha.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class EndgameDatabaseTest {
+
+	private static final int MAX_SEEDS = 7;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testIndexRoundTrip() {
+		EndgameIndex index = new EndgameIndex(6, MAX_SEEDS);
+		int[] houses = new int[12];
+		for (int seeds = 0; seeds <= MAX_SEEDS; seeds++) {
+			for (int rank = 0; rank < index.getLevelSize(seeds); rank++) {
+				index.unrank(seeds, rank, houses);
+				assertEquals(rank, index.rank(houses));
+			}
+		}
+		index.unrank(3, 0, houses);
+		assertArrayEquals(new int[] {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 3}, houses);
+	}
+
+	@Test
+	public void testValuesMatchSearch() throws IOException {
+		File file = folder.newFile("endgame.db");
+		EndgameDatabaseBuilder.build(file.toPath(), 6, MAX_SEEDS);
+		EndgameDatabase database = EndgameDatabase.open(file.toPath());
+		assertEquals(MAX_SEEDS, database.getMaxSeeds());
+
+		AlphaBetaSearch search = new AlphaBetaSearch(new TranspositionTable(1));
+		Random random = new Random(3);
+		for (int position = 0; position < 200; position++) {
+			KalahaBoard board = randomEndgame(random);
+			if (board.isGameFinished()) {
+				continue;
+			}
+			assertTrue(database.contains(board));
+			SearchResult result = search.search(board, SearchLimits.depth(SearchLimits.MAX_DEPTH));
+			assertEquals(board.getBoardState(), result.getScore(), database.getScore(board));
+		}
+
+		KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT);
+		assertFalse(database.contains(board));
+	}
+
+	private static KalahaBoard randomEndgame(Random random) {
+		KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT);
+		int[] pits = new int[board.getPitsCount()];
+		for (int seeds = 1 + random.nextInt(MAX_SEEDS); seeds > 0; seeds--) {
+			int pit = random.nextInt(pits.length);
+			pits[board.isHouse(pit) ? pit : pit - 1]++;
+		}
+		pits[board.getStorePit(0)] = random.nextInt(30);
+		pits[board.getStorePit(1)] = random.nextInt(30);
+		for (int pit = 0; pit < pits.length; pit++) {
+			board.setSeeds(pit, pits[pit]);
+		}
+		board.setPlayerToMove(random.nextInt(2));
+		return board;
+	}
+}
@@ -0,0 +1,45 @@
+package com.evoludev.kalaha.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class MctsPlayerTest {
+
+	@Test
+	public void testFindsWinningCapture() {
+		// Only captures from house 3 (right away or after extra turn from house 5) win
+		KalahaBoard board = KalahaGame.fromBoardState("0|0|0|0|1|0|1|21|0|20|0|0|0|1|28", "A", "B").getBoard();
+		String state = board.getBoardState();
+		MctsPlayer player = new MctsPlayer(1 << 16);
+		player.setSeed(1);
+		SearchResult result = player.search(board, SearchLimits.nodes(20000));
+		assertEquals(state, board.getBoardState());
+		assertEquals(20000, result.getNodes());
+		assertTrue(result.getBestMove() == 3 || result.getBestMove() == 5);
+		assertTrue(result.getScore() > 50);
+	}
+
+	@Test
+	public void testParallelPlayoutsReuseNodePool() {
+		MctsPlayer player = new MctsPlayer(1 << 12);
+		player.setThreads(3);
+		try {
+			KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT);
+			for (int move = 0; move < 3; move++) {
+				SearchResult result = player.search(board, SearchLimits.nodes(10000));
+				assertEquals(10000, result.getNodes());
+				assertTrue(result.getDepth() > 0);
+				assertTrue(board.isLegalMove(board.getPlayerToMove(), result.getBestMove()));
+				board.makeMove(result.getBestMove());
+			}
+		} finally {
+			player.shutdown();
+		}
+	}
+}
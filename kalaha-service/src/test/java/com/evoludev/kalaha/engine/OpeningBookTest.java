@@ -0,0 +1,84 @@
+package com.evoludev.kalaha.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class OpeningBookTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testBuildAndLookup() throws IOException {
+		KalahaRules rules = KalahaRules.of(4, 3);
+		Path file = folder.getRoot().toPath().resolve("book.bin");
+		int positions = OpeningBookBuilder.build(file, rules, 3, 1);
+		OpeningBook book = OpeningBook.open(file);
+		assertEquals(positions, book.getPositions());
+		assertEquals(1, book.getDepth());
+		assertEquals(rules, book.getRules());
+
+		// Every line of up to 3 plies is in the book, depth 1 scores are store differences after the move
+		assertEquals(positions, checkLines(book, new KalahaBoard(rules), 3));
+
+		KalahaBoard board = new KalahaBoard(rules);
+		assertEquals(OpeningBook.NO_SCORE, book.getScore(board.copy().setBoardState("0|0|0|0|5|0|3|3|3|3|0"), 0));
+		assertEquals(-1, book.getBestMove(board.copy().setBoardState("0|0|0|0|5|0|3|3|3|3|0")));
+		assertEquals(-1, book.getBestMove(new KalahaBoard(KalahaRules.DEFAULT)));
+
+		// Searched book agrees on legal best moves
+		OpeningBookBuilder.build(file, rules, 2, 6);
+		book = OpeningBook.open(file);
+		int best = book.getBestMove(board);
+		assertTrue(board.isLegalMove(0, best));
+		for (int house = 0; house < rules.getHousesPerPlayer(); house++) {
+			assertTrue(book.getScore(board, house) <= book.getScore(board, best));
+		}
+	}
+
+	/**
+	 * @return number of unfinished positions checked, walking all lines of given plies
+	 */
+	private static int checkLines(OpeningBook book, KalahaBoard board, int plies) {
+		return checkLines(book, board, plies, new HashSet<>());
+	}
+
+	private static int checkLines(OpeningBook book, KalahaBoard board, int plies, Set<Long> seen) {
+		if (board.isGameFinished()) {
+			assertFalse(book.contains(board));
+			return 0;
+		}
+		assertTrue(board.getBoardState(), book.contains(board));
+		int checked = seen.add(board.getHash()) ? 1 : 0;
+		final int player = board.getPlayerToMove();
+		for (int house = 0; house < board.getHousesPerPlayer(); house++) {
+			if (!board.isLegalMove(player, house)) {
+				assertEquals(OpeningBook.NO_SCORE, book.getScore(board, house));
+				continue;
+			}
+			long undo = board.makeMove(house);
+			int storeDiff = board.getSeeds(board.getStorePit(player)) - board.getSeeds(board.getStorePit(1 - player));
+			board.unmakeMove(undo);
+			assertEquals(storeDiff, book.getScore(board, house));
+			if (plies > 0) {
+				board.makeMove(house);
+				checked += checkLines(book, board, plies - 1, seen);
+				board.unmakeMove(undo);
+			}
+		}
+		return checked;
+	}
+}
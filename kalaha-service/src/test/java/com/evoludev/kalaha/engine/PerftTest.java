@@ -0,0 +1,124 @@
+package com.evoludev.kalaha.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class PerftTest {
+
+	@Test
+	public void testKnownCounts() {
+		Perft perft = new Perft();
+		// leaves, nodes, game ends, captures, extra turns
+		long[][] standard = {
+				{ 6, 6, 0, 0, 1 },
+				{ 35, 41, 0, 0, 1 },
+				{ 190, 231, 0, 0, 1 },
+				{ 1056, 1287, 0, 1, 9 },
+				{ 5882, 7169, 0, 41, 254 },
+				{ 32243, 39412, 0, 545, 1475 },
+				{ 177827, 217239, 0, 4588, 12089 } };
+		for (int depth = 1; depth <= standard.length; depth++) {
+			assertCounts(standard[depth - 1], perft.run(new KalahaBoard(KalahaRules.DEFAULT), depth));
+		}
+		assertCounts(new long[] { 41831, 62795, 184, 5375, 9952 }, perft.run(new KalahaBoard(KalahaRules.of(4, 3)), 9));
+	}
+
+	@Test
+	public void testReferenceRules() {
+		Perft perft = new Perft();
+		String[] states = { "0|6|6|6|6|6|6|0|6|6|6|6|6|6|0", "1|1|2|0|1|3|2|30|2|1|0|1|2|1|26",
+				"0|0|0|0|0|0|1|35|0|0|0|0|0|1|35", "0|13|0|0|0|0|0|20|0|0|2|0|0|1|36" };
+		for (String state : states) {
+			KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT).setBoardState(state);
+			long[] expected = new long[5];
+			int[] pits = new int[board.getPitsCount()];
+			for (int pit = 0; pit < pits.length; pit++) {
+				pits[pit] = board.getSeeds(pit);
+			}
+			referencePerft(pits, board.getPlayerToMove(), 6, expected);
+			assertCounts(expected, perft.run(board, 6));
+		}
+	}
+
+	@Test
+	public void testParallelAndTableCounts() {
+		KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT).setBoardState("0|1|2|0|1|3|2|30|2|1|0|1|2|1|26");
+		Perft perft = new Perft();
+		Perft.Result expected = perft.run(board, 10);
+		perft.setTableSize(1);
+		assertCounts(expected, perft.run(board, 10));
+		perft.setThreads(3);
+		assertCounts(expected, perft.run(board, 10));
+		perft.setTableSize(0);
+		assertCounts(expected, perft.run(board, 10));
+		perft.shutdown();
+		assertEquals("0|1|2|0|1|3|2|30|2|1|0|1|2|1|26", board.getBoardState());
+	}
+
+	private static void assertCounts(Perft.Result expected, Perft.Result actual) {
+		assertCounts(new long[] { expected.getLeaves(), expected.getNodes(), expected.getGameEnds(), expected.getCaptures(),
+				expected.getExtraTurns() }, actual);
+	}
+
+	private static void assertCounts(long[] expected, Perft.Result actual) {
+		assertEquals(actual.toString(), expected[0], actual.getLeaves());
+		assertEquals(actual.toString(), expected[1], actual.getNodes());
+		assertEquals(actual.toString(), expected[2], actual.getGameEnds());
+		assertEquals(actual.toString(), expected[3], actual.getCaptures());
+		assertEquals(actual.toString(), expected[4], actual.getExtraTurns());
+	}
+
+	/**
+	 * Plain two player 6 house rules on copied arrays, independent of {@link KalahaBoard}
+	 */
+	private static void referencePerft(int[] pits, int player, int depth, long[] counts) {
+		for (int house = 0; house < 6; house++) {
+			int pit = player * 7 + house;
+			if (pits[pit] == 0) {
+				continue;
+			}
+			int[] next = pits.clone();
+			int seeds = next[pit];
+			next[pit] = 0;
+			while (seeds > 0) {
+				pit = (pit + 1) % 14;
+				if (pit != (1 - player) * 7 + 6) {
+					next[pit]++;
+					seeds--;
+				}
+			}
+			counts[1]++;
+			int nextPlayer = 1 - player;
+			if (pit == player * 7 + 6) {
+				nextPlayer = player;
+			} else if (pit / 7 == player && next[pit] == 1 && next[12 - pit] > 0) {
+				next[player * 7 + 6] += next[12 - pit] + 1;
+				next[12 - pit] = 0;
+				next[pit] = 0;
+				counts[3]++;
+			}
+			boolean gameEnd = false;
+			for (int side = 0; side < 2; side++) {
+				int houseSeeds = 0;
+				for (int h = side * 7; h < side * 7 + 6; h++) {
+					houseSeeds += next[h];
+				}
+				gameEnd |= houseSeeds == 0;
+			}
+			if (gameEnd) {
+				counts[2]++;
+			} else if (nextPlayer == player) {
+				counts[4]++;
+			}
+			if (depth == 1) {
+				counts[0]++;
+			} else if (!gameEnd) {
+				referencePerft(next, nextPlayer, depth - 1, counts);
+			}
+		}
+	}
+}
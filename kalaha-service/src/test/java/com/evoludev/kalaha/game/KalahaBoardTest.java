@@ -0,0 +1,143 @@
+package com.evoludev.kalaha.game;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class KalahaBoardTest {
+
+	@Test
+	public void testUnmakeRestoresEveryPosition() {
+		Random random = new Random(42);
+		for (KalahaRules rules : new KalahaRules[] {KalahaRules.DEFAULT, KalahaRules.of(6, 20), KalahaRules.of(4, 3)}) {
+			for (int game = 0; game < 200; game++) {
+				KalahaBoard board = new KalahaBoard(rules);
+				Deque<long[]> snapshots = new ArrayDeque<>();
+				Deque<Long> undos = new ArrayDeque<>();
+				while (!board.isGameFinished()) {
+					snapshots.push(snapshot(board));
+					undos.push(board.makeMove(board.getLegalMove(random.nextInt(board.getLegalMovesCount()))));
+				}
+				assertEquals(0, board.getLegalMoves());
+				while (!undos.isEmpty()) {
+					board.unmakeMove(undos.pop());
+					assertArrayEquals(snapshots.pop(), snapshot(board));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLegalMoveByIndex() {
+		KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT).setBoardState("0|0|2|0|0|1|0|3|1|1|1|1|1|1|0");
+		assertEquals(2, board.getLegalMovesCount());
+		assertEquals(1, board.getLegalMove(0));
+		assertEquals(4, board.getLegalMove(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTooManySeedsRejected() {
+		// Would overflow seed counts of undo tokens
+		new KalahaBoard(KalahaRules.DEFAULT).setBoardState("0|" + (1 << 28) + "|0|0|0|0|0|0|1|1|1|1|1|1|0");
+	}
+
+	@Test
+	public void testUndoToken() {
+		KalahaBoard board = KalahaGame.fromBoardState("0|2|2|1|11|11|9|3|8|8|7|7|0|1|2", "A", "B").getBoard();
+		long undo = board.makeMove(3);
+		assertEquals(3, KalahaBoard.getUndoHouse(undo));
+		assertEquals(0, KalahaBoard.getUndoPlayer(undo));
+		assertFalse(KalahaBoard.isCapture(undo));
+
+		// Last seed lands in own empty house 2, capturing 12 opposite seeds
+		board = KalahaGame.fromBoardState("0|1|1|0|1|1|1|30|1|1|1|12|1|1|20", "A", "B").getBoard();
+		undo = board.makeMove(1);
+		assertTrue(KalahaBoard.isCapture(undo));
+		assertEquals(12, KalahaBoard.getCapturedSeeds(undo));
+		assertEquals(43, board.getSeeds(board.getStorePit(0)));
+	}
+
+	@Test
+	public void testHashAndPositionKey() {
+		Random random = new Random(7);
+		for (KalahaRules rules : new KalahaRules[] {KalahaRules.DEFAULT, KalahaRules.of(6, 20)}) {
+			for (int game = 0; game < 100; game++) {
+				KalahaBoard board = new KalahaBoard(rules);
+				while (!board.isGameFinished()) {
+					long hashBefore = board.getHash();
+					long undo = board.makeMove(board.getLegalMove(random.nextInt(board.getLegalMovesCount())));
+					String state = board.getBoardState();
+					KalahaBoard fresh = new KalahaBoard(rules).setBoardState(state);
+					assertEquals(fresh.getHash(), board.getHash());
+
+					PositionKey key = PositionKey.of(board);
+					assertEquals(key, PositionKey.fromBoardState(rules, state));
+					assertEquals(state, key.toBoardState(rules));
+					assertEquals(board.getHash(), key.applyTo(new KalahaBoard(rules)).getHash());
+
+					board.unmakeMove(undo);
+					assertEquals(hashBefore, board.getHash());
+					board.makeMove(KalahaBoard.getUndoHouse(undo));
+				}
+			}
+		}
+		assertNotEquals(new KalahaBoard(KalahaRules.DEFAULT).setBoardState("0|6|6|6|6|6|6|0|6|6|6|6|6|6|0").getHash(),
+				new KalahaBoard(KalahaRules.DEFAULT).setBoardState("1|6|6|6|6|6|6|0|6|6|6|6|6|6|0").getHash());
+	}
+
+	@Test
+	public void testFork() {
+		Random random = new Random(11);
+		KalahaBoard target = new KalahaBoard(KalahaRules.DEFAULT);
+		for (int game = 0; game < 50; game++) {
+			KalahaBoard board = new KalahaBoard(KalahaRules.DEFAULT);
+			long undo = 0;
+			while (!board.isGameFinished()) {
+				undo = board.makeMove(board.getLegalMove(random.nextInt(board.getLegalMovesCount())));
+				KalahaBoard copy = board.copy();
+				assertArrayEquals(snapshot(board), snapshot(copy));
+				assertEquals(board.getHash(), copy.getHash());
+				assertEquals(board.getHash(), board.forkInto(target).getHash());
+				assertArrayEquals(snapshot(board), snapshot(target));
+			}
+			// Forks take back the final move the same way, the original is not touched
+			String finalState = board.getBoardState();
+			KalahaBoard fork = board.forkInto(target);
+			fork.unmakeMove(undo);
+			board.unmakeMove(undo);
+			assertArrayEquals(snapshot(board), snapshot(fork));
+			assertEquals(board.getHash(), fork.getHash());
+			assertNotEquals(finalState, fork.getBoardState());
+		}
+
+		KalahaGame game = KalahaGame.newGame("A", "B").makeMove(2);
+		KalahaGame copy = game.copy().makeMove(0);
+		assertEquals("1|6|6|0|7|7|7|1|7|7|6|6|6|6|0", game.getBoardState());
+		assertEquals(copy.getBoardState(), copy.getPosition().getBoardState());
+		assertEquals(game.getPosition(), game.forkInto(copy).getPosition());
+		assertEquals("B", copy.getPlayerToMove().getName());
+	}
+
+	private static long[] snapshot(KalahaBoard board) {
+		long[] state = new long[board.getPitsCount() + 2 * board.getNumPlayers() + 2];
+		int idx = 0;
+		for (int pit = 0; pit < board.getPitsCount(); pit++) {
+			state[idx++] = board.getSeeds(pit);
+		}
+		for (int p = 0; p < board.getNumPlayers(); p++) {
+			state[idx++] = board.getHouseSeeds(p);
+			state[idx++] = board.isAllHousesEmpty(p) ? 1 : 0;
+		}
+		state[idx++] = board.getPlayerToMove();
+		state[idx++] = board.getLegalMoves();
+		return state;
+	}
+}
@@ -5,6 +5,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import org.junit.Before;
@@ -99,6 +101,95 @@ public class KalahaTest {
 		assertEquals(Optional.empty(), fromStateKalaha.getWinningPlayer());		
 	}
 	
+	@Test
+	public void testLegalMoves() {
+		assertEquals(0b111111, kalaha.getLegalMoves());
+		kalaha.makeMove(0);
+		assertEquals(0b111110, kalaha.getLegalMoves());
+		KalahaGame fromStateKalaha = KalahaGame.fromBoardState("0|0|0|0|0|0|1|35|0|0|0|0|0|1|35", "Me", "You");
+		assertEquals(0b100000, fromStateKalaha.getLegalMoves());
+		fromStateKalaha.makeMove(5);
+		assertEquals(0, fromStateKalaha.getLegalMoves());
+	}
+
+	@Test
+	public void testLargeSeedSowing() {
+		KalahaRules rules = KalahaRules.of(6, 20);
+		// 2 full laps of 13 pits and one seed more, opponent store is skipped
+		KalahaGame game = KalahaGame.fromBoardState(rules, "0|27|0|0|0|0|0|0|1|0|0|0|0|0|0", "Me", "You");
+		game.makeMove(0);
+		assertEquals("1|2|3|2|2|2|2|2|3|2|2|2|2|2|0", game.getBoardState());
+
+		// Exactly 100000 laps, last seed lands back in the emptied house
+		game = KalahaGame.fromBoardState(rules, "0|1300000|0|0|0|0|0|0|1|0|0|0|0|0|0", "Me", "You");
+		game.makeMove(0);
+		assertEquals(100000, game.getPlayers().get(0).getFirstHouse().getSeeds());
+		assertEquals(100001, game.getPlayers().get(1).getFirstHouse().getSeeds());
+		assertEquals(0, game.getPlayers().get(1).getStore().getSeeds());
+		assertEquals(1, game.getPlayerToMove().getIndex());
+	}
+
+	@Test
+	public void testPublishedPosition() {
+		GamePosition initial = kalaha.getPosition();
+		assertEquals("0|6|6|6|6|6|6|0|6|6|6|6|6|6|0", initial.getBoardState());
+		kalaha.makeMove(2);
+		GamePosition afterMove = kalaha.getPosition();
+		assertEquals("0|6|6|6|6|6|6|0|6|6|6|6|6|6|0", initial.getBoardState());
+		assertEquals(kalaha.getBoardState(), afterMove.getBoardState());
+		assertEquals(kalaha.getBoard().getHash(), afterMove.getHash());
+		assertEquals(afterMove, initial.play(2));
+		assertEquals(kalaha.getLegalMoves(), afterMove.getLegalMoves());
+
+		// Direct board changes are published on request
+		kalaha.getPlayers().get(0).getStore().addSeeds(1);
+		assertEquals(afterMove, kalaha.getPosition());
+		assertEquals(1, kalaha.publishPosition().getSeeds(6) - afterMove.getSeeds(6));
+		assertEquals(afterMove, GamePosition.of(afterMove.toBoard()));
+	}
+
+	@Test
+	public void testMoveEvents() {
+		List<MoveEvent> events = new ArrayList<>();
+		kalaha.addMoveListener(events::add);
+
+		// Last seed in own store - extra turn
+		kalaha.makeMove(0);
+		MoveEvent event = events.get(0);
+		assertEquals(0x7F, event.getChangedPits());
+		assertFalse(event.isTurnChange());
+		assertFalse(event.isCapture());
+		assertEquals(kalaha.getPosition(), event.getPosition());
+		assertEquals("0:0 0=0 1=7 2=7 3=7 4=7 5=7 6=1 turn=0", event.toString());
+
+		kalaha.makeMove(1);
+		event = events.get(1);
+		assertEquals(0x1FE, event.getChangedPits());
+		assertTrue(event.isTurnChange());
+		assertEquals(1, event.getPosition().getPlayerToMove());
+
+		// Seed landing in own empty house captures the opposite house, the landing house ends up unchanged
+		KalahaGame capture = KalahaGame.fromBoardState("0|1|0|6|6|6|6|0|6|6|6|6|6|6|0", "Me", "You");
+		capture.addMoveListener(events::add);
+		capture.makeMove(0);
+		event = events.get(2);
+		assertTrue(event.isCapture());
+		assertEquals(6, event.getCapturedSeeds());
+		assertEquals(1L << 0 | 1L << 6 | 1L << 11, event.getChangedPits());
+		assertFalse(event.isPitChanged(1));
+
+		// Last move ends the game in a draw
+		KalahaGame end = KalahaGame.fromBoardState("0|0|0|0|0|0|1|35|0|0|0|0|0|1|35", "Me", "You");
+		end.addMoveListener(events::add);
+		end.makeMove(5);
+		assertEquals(4, events.size());
+		event = events.get(3);
+		assertTrue(event.isGameOver());
+		assertFalse(event.isTurnChange());
+		assertEquals(-1, event.getWinner());
+		assertTrue(event.isPitChanged(5) && event.isPitChanged(6) && event.isPitChanged(12));
+	}
+
 	private void makeMultiMove(int[] moves) {
 		for (int m = 0; m < moves.length; m++) {
 			//System.out.println("Move = " + (moves[m] + 1));
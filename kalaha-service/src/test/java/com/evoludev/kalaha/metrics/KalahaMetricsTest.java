@@ -0,0 +1,73 @@
+package com.evoludev.kalaha.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.evoludev.kalaha.game.KalahaGame;
+
+public class KalahaMetricsTest {
+
+	@After
+	public void disable() {
+		KalahaMetrics.setEnabled(false);
+	}
+
+	@Test
+	public void testHistogram() {
+		for (long value : new long[] { 0, 7, 8, 15, 16, 1000, 123456789, Long.MAX_VALUE }) {
+			int bucket = LatencyHistogram.bucketOf(value);
+			assertTrue(value <= LatencyHistogram.upperBound(bucket));
+			assertTrue(bucket == 0 || value > LatencyHistogram.upperBound(bucket - 1));
+		}
+		LatencyHistogram histogram = new LatencyHistogram("test");
+		for (int micros = 1; micros <= 1000; micros++) {
+			histogram.record(micros * 1000L);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMaxNanos());
+		assertEquals(500500, histogram.getMeanNanos());
+		long median = histogram.getQuantileNanos(0.5);
+		assertTrue(median >= 500000 && median <= 500000 * 9 / 8);
+		assertEquals(1000000, histogram.getQuantileNanos(1));
+	}
+
+	@Test
+	public void testCounters() throws Exception {
+		long moves = KalahaMetrics.getMoves();
+		KalahaGame.newGame("A", "B").makeMove(0);
+		assertEquals("Disabled metrics do not count", moves, KalahaMetrics.getMoves());
+
+		KalahaMetrics.setEnabled(true);
+		long captures = KalahaMetrics.getCaptures();
+		long extraTurns = KalahaMetrics.getExtraTurns();
+		long finished = KalahaMetrics.getFinishedGames();
+		long draws = KalahaMetrics.getDraws();
+		// Last seed of house 0 lands in own store
+		KalahaGame.newGame("A", "B").makeMove(0);
+		// Capture of 12 seeds
+		KalahaGame.fromBoardState("0|1|1|0|1|1|1|30|1|1|1|12|1|1|20", "A", "B").makeMove(1);
+		// Last seeds of both players end the game in a draw
+		KalahaGame.fromBoardState("0|0|0|0|0|0|1|35|0|0|0|0|0|1|35", "A", "B").makeMove(5);
+		assertEquals(moves + 3, KalahaMetrics.getMoves());
+		assertEquals(captures + 1, KalahaMetrics.getCaptures());
+		assertEquals(extraTurns + 1, KalahaMetrics.getExtraTurns());
+		assertEquals(finished + 1, KalahaMetrics.getFinishedGames());
+		assertEquals(draws + 1, KalahaMetrics.getDraws());
+
+		KalahaMetrics.recordMoveLatency(KalahaMetrics.startTimer());
+		String text = KalahaMetrics.scrape();
+		assertTrue(text, text.contains("kalaha_moves_total " + KalahaMetrics.getMoves() + "\n"));
+		assertTrue(text, text.contains("kalaha_move_latency_seconds_count " + KalahaMetrics.getMoveLatency().getCount()));
+
+		KalahaMetrics.registerMBean();
+		assertEquals(KalahaMetrics.getDraws(), ManagementFactory.getPlatformMBeanServer()
+				.getAttribute(new ObjectName(KalahaMetrics.OBJECT_NAME), "Draws"));
+	}
+}
@@ -0,0 +1,93 @@
+package com.evoludev.kalaha.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class GameActorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMovesAreBatched() {
+		Queue<Runnable> tasks = new ArrayDeque<>();
+		GameActor actor = new GameActor(KalahaGame.newGame("A", "B"), tasks::add);
+		GameSnapshot initial = actor.getSnapshot();
+
+		CompletableFuture<GameSnapshot> first = actor.move(2);
+		CompletableFuture<GameSnapshot> illegal = actor.move(6);
+		CompletableFuture<GameSnapshot> second = actor.move(0);
+		assertEquals(1, tasks.size());
+		assertSame(initial, actor.getSnapshot());
+		assertFalse(first.isDone());
+
+		tasks.poll().run();
+		assertTrue(tasks.isEmpty());
+		assertTrue(illegal.isCompletedExceptionally());
+		assertSame(actor.getSnapshot(), first.join());
+		assertSame(actor.getSnapshot(), second.join());
+		assertEquals(2, actor.getSnapshot().getMoveNumber());
+		assertEquals(KalahaGame.newGame("A", "B").makeMove(2).makeMove(0).getBoardState(), actor.getSnapshot().getBoardState());
+	}
+
+	@Test
+	public void testConcurrentPlay() throws InterruptedException {
+		GameActor actor = new GameActor(KalahaGame.newGame("A", "B"), ForkJoinPool.commonPool());
+		AtomicLong applied = new AtomicLong();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (GameSnapshot snapshot = actor.getSnapshot(); !snapshot.isGameFinished(); snapshot = actor.getSnapshot()) {
+					// Moves chosen from a stale snapshot may turn illegal by their turn and fail
+					actor.move(Integer.numberOfTrailingZeros(snapshot.getLegalMoves())).handle((result, error) -> error == null ? applied.incrementAndGet() : 0)
+							.join();
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		GameSnapshot last = actor.getSnapshot();
+		assertTrue(last.isGameFinished());
+		assertEquals(applied.get(), last.getMoveNumber());
+		KalahaGame game = KalahaGame.fromBoardState(last.getBoardState(), "A", "B");
+		assertEquals(KalahaRules.DEFAULT.getTotalSeeds(), game.getBoard().getSeeds(game.getBoard().getStorePit(0))
+				+ game.getBoard().getSeeds(game.getBoard().getStorePit(1)));
+	}
+
+	@Test
+	public void testJournalFailureFailsActor() throws IOException {
+		Queue<Runnable> tasks = new ArrayDeque<>();
+		MoveJournal journal = MoveJournal.open(folder.newFolder("journal").toPath());
+		GameActor actor = new GameActor(KalahaGame.newGame("A", "B"), tasks::add, 0, journal, 1);
+		// A closed journal rejects appends
+		journal.close();
+
+		CompletableFuture<GameSnapshot> first = actor.move(2);
+		tasks.poll().run();
+		assertTrue(first.isCompletedExceptionally());
+		assertTrue(actor.isFailed());
+
+		CompletableFuture<GameSnapshot> second = actor.move(0);
+		tasks.poll().run();
+		assertTrue(second.isCompletedExceptionally());
+		assertEquals(1, actor.getSnapshot().getMoveNumber());
+	}
+}
@@ -0,0 +1,120 @@
+package com.evoludev.kalaha.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class GameSessionStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testParkingAndRehydration() {
+		for (boolean offHeap : new boolean[] { false, true }) {
+			GameSessionStore store = new GameSessionStore(1, 2, Long.MAX_VALUE, 60000, offHeap, Runnable::run);
+			long first = store.create(KalahaRules.DEFAULT);
+			store.move(first, 2).join();
+			for (int i = 0; i < 4; i++) {
+				store.create(KalahaRules.DEFAULT);
+			}
+			assertEquals(2, store.getHotCount());
+			assertEquals(3, store.getParkedCount());
+			assertEquals(offHeap, store.getOffHeapBytes() > 0);
+
+			// Reading does not rehydrate, next move does
+			KalahaGame expected = KalahaGame.newGame("A", "B").makeMove(2);
+			assertEquals(expected.getBoardState(), store.getSnapshot(first).getBoardState());
+			assertEquals(3, store.getParkedCount());
+			GameSnapshot snapshot = store.move(first, 0).join();
+			assertEquals(expected.makeMove(0).getBoardState(), snapshot.getBoardState());
+			assertEquals(2, snapshot.getMoveNumber());
+			assertEquals(2, store.getHotCount());
+			assertEquals(5, store.size());
+
+			assertTrue(store.remove(first));
+			assertFalse(store.remove(first));
+			assertNull(store.getSnapshot(first));
+			assertNull(store.move(first, 0));
+		}
+	}
+
+	@Test
+	public void testEviction() {
+		GameSessionStore store = new GameSessionStore(1, 1, Long.MAX_VALUE, 60000, false, Runnable::run);
+		long shortLived = store.create(KalahaRules.DEFAULT, 1000);
+		long longLived = store.create(KalahaRules.DEFAULT);
+		assertEquals(0, store.evictExpired(System.currentTimeMillis()));
+		assertEquals(1, store.evictExpired(System.currentTimeMillis() + 2000));
+		assertNull(store.getSnapshot(shortLived));
+		assertEquals(1, store.size());
+		assertEquals(1, store.evictExpired(System.currentTimeMillis() + 120000));
+		assertNull(store.getSnapshot(longLived));
+		assertEquals(0, store.getHeapBytes());
+
+		// Memory limit of two parked sessions and nothing hot
+		store = new GameSessionStore(1, 0, 2 * GameSessionStore.PARKED_SESSION_BYTES, 60000, false, Runnable::run);
+		long oldest = store.create(KalahaRules.DEFAULT);
+		store.create(KalahaRules.DEFAULT);
+		store.create(KalahaRules.DEFAULT);
+		assertEquals(2, store.getParkedCount());
+		assertEquals(1, store.getEvictedCount());
+		assertNull(store.getSnapshot(oldest));
+	}
+
+	@Test
+	public void testJournalFailureKeepsStoreConsistent() throws IOException {
+		GameSessionStore store = new GameSessionStore(1, 1, Long.MAX_VALUE, 60000, false, Runnable::run);
+		MoveJournal journal = MoveJournal.open(folder.newFolder("journal").toPath());
+		store.setJournal(journal);
+		long id = store.create(KalahaRules.DEFAULT);
+		journal.close();
+
+		try {
+			store.create(KalahaRules.DEFAULT);
+			fail("Session created without its journal record");
+		} catch (IllegalStateException e) {
+			// Closed journal
+		}
+		assertEquals(1, store.size());
+		try {
+			store.remove(id);
+			fail("Session removed without its journal record");
+		} catch (IllegalStateException e) {
+			// Closed journal
+		}
+		assertEquals(1, store.size());
+		assertNotNull(store.getSnapshot(id));
+	}
+
+	@Test
+	public void testFailedSessionIsNotParked() throws IOException {
+		GameSessionStore store = new GameSessionStore(1, 1, Long.MAX_VALUE, 60000, false, Runnable::run);
+		MoveJournal journal = MoveJournal.open(folder.newFolder("failed").toPath());
+		store.setJournal(journal);
+		long failed = store.create(KalahaRules.DEFAULT);
+		journal.close();
+		assertTrue(store.move(failed, 2).isCompletedExceptionally());
+
+		// Parking the failed session would let it accept moves again
+		try (MoveJournal next = MoveJournal.open(folder.newFolder("next").toPath())) {
+			store.setJournal(next);
+			store.create(KalahaRules.DEFAULT);
+			assertEquals(1, store.getHotCount());
+			assertEquals(1, store.getParkedCount());
+			assertTrue(store.move(failed, 0).isCompletedExceptionally());
+		}
+	}
+}
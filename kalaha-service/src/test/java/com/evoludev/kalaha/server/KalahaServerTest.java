@@ -0,0 +1,75 @@
+package com.evoludev.kalaha.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Scanner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KalahaServerTest {
+
+	private KalahaServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new KalahaServer(new InetSocketAddress("localhost", 0));
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void testPlayGame() throws IOException {
+		assertEquals("{\"id\":1,\"rules\":\"Kalaha(6,6)\",\"state\":\"0|6|6|6|6|6|6|0|6|6|6|6|6|6|0\",\"playerToMove\":0,"
+				+ "\"legalMoves\":[0,1,2,3,4,5],\"finished\":false}", request("POST", "/games", 201));
+		assertEquals("{\"id\":1,\"rules\":\"Kalaha(6,6)\",\"state\":\"1|6|6|0|7|7|7|1|7|7|6|6|6|6|0\",\"playerToMove\":1,"
+				+ "\"legalMoves\":[0,1,2,3,4,5],\"finished\":false}", request("POST", "/games/1/moves?house=2", 200));
+		assertEquals(request("GET", "/games/1", 200), request("GET", "/games/1", 200));
+		assertTrue(request("POST", "/games?houses=4&seeds=3", 201).contains("\"state\":\"0|3|3|3|3|0|3|3|3|3|0\""));
+		assertEquals(2, server.getGamesCount());
+
+		request("DELETE", "/games/1", 204);
+		assertEquals(1, server.getGamesCount());
+	}
+
+	@Test
+	public void testErrors() throws IOException {
+		request("POST", "/games", 201);
+		assertTrue(request("POST", "/games/1/moves?house=6", 400).contains("Invalid house number: 6"));
+		request("POST", "/games/1/moves", 400);
+		request("GET", "/games/2", 404);
+		request("POST", "/gamesxyz", 404);
+		request("PUT", "/games/1", 405);
+	}
+
+	@Test
+	public void testLoadTest() throws IOException {
+		String report = new KalahaLoadTest("http://localhost:" + server.getPort(), 50, 4, 300).run();
+		assertTrue(report, report.contains("errors=0"));
+	}
+
+	private String request(String method, String path, int expectedStatus) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+		connection.setRequestMethod(method);
+		assertEquals(expectedStatus, connection.getResponseCode());
+		try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			if (in == null) {
+				return "";
+			}
+			try (Scanner scanner = new Scanner(in, "UTF-8").useDelimiter("\\A")) {
+				return scanner.hasNext() ? scanner.next() : "";
+			}
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package com.evoludev.kalaha.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evoludev.kalaha.game.KalahaBoard;
+import com.evoludev.kalaha.game.KalahaGame;
+import com.evoludev.kalaha.game.KalahaRules;
+
+public class MoveJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAppendReopenAndTornRecord() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		// Three records per segment
+		int segmentBytes = 3 * MoveJournal.RECORD_BYTES;
+		try (MoveJournal journal = MoveJournal.open(directory, segmentBytes)) {
+			journal.append(7, 0, 0, MoveJournal.createWord(KalahaRules.of(4, 3)));
+			for (int move = 1; move <= 4; move++) {
+				journal.append(7, move, move, MoveJournal.moveWord(move % 4));
+			}
+			journal.whenDurable(journal.getPosition()).join();
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			assertEquals(2, files.count());
+		}
+
+		// Tear the last record
+		Path last = directory.resolve(String.format("journal-%016d.log", 1));
+		try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 1 }), MoveJournal.RECORD_BYTES + 3);
+		}
+		try (MoveJournal journal = MoveJournal.open(directory, segmentBytes)) {
+			assertEquals(4, journal.getPosition());
+			List<String> records = new ArrayList<>();
+			assertEquals(4, journal.replay(0, (position, gameId, hash, moveNumber, word) -> records.add(
+					position + ":" + MoveJournal.getType(word) + ":" + moveNumber)));
+			assertEquals("[0:1:0, 1:2:1, 2:2:2, 3:2:3]", records.toString());
+			assertEquals(KalahaRules.of(4, 3), MoveJournal.getRules(MoveJournal.createWord(KalahaRules.of(4, 3))));
+
+			journal.deleteBefore(journal.getPosition());
+			try (Stream<Path> files = Files.list(directory)) {
+				assertEquals("[" + last.getFileName() + "]", files.map(Path::getFileName).collect(Collectors.toList()).toString());
+			}
+		}
+	}
+
+	@Test
+	public void testStaleRecordsAfterHoleAreCleared() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		int segmentBytes = 4 * MoveJournal.RECORD_BYTES;
+		try (MoveJournal journal = MoveJournal.open(directory, segmentBytes)) {
+			journal.append(7, 0, 0, MoveJournal.createWord(KalahaRules.DEFAULT));
+			for (int move = 1; move <= 3; move++) {
+				journal.append(7, move, move, MoveJournal.moveWord(move));
+			}
+			journal.whenDurable(journal.getPosition()).join();
+		}
+		// Crash left the second record unwritten but later ones on disk
+		try (FileChannel channel = FileChannel.open(directory.resolve(String.format("journal-%016d.log", 0)), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 1 }), MoveJournal.RECORD_BYTES + 3);
+		}
+		try (MoveJournal journal = MoveJournal.open(directory, segmentBytes)) {
+			assertEquals(1, journal.getPosition());
+			journal.append(8, 0, 0, MoveJournal.createWord(KalahaRules.DEFAULT));
+			journal.whenDurable(journal.getPosition()).join();
+		}
+		try (MoveJournal journal = MoveJournal.open(directory, segmentBytes)) {
+			assertEquals(2, journal.getPosition());
+		}
+	}
+
+	@Test
+	public void testCheckpointAndRecovery() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		Path checkpoint = directory.resolve("sessions.checkpoint");
+		GameSessionStore store = new GameSessionStore(2, 1, Long.MAX_VALUE, 60000, false, Runnable::run);
+		store.setJournal(MoveJournal.open(directory));
+		long first = store.create(KalahaRules.DEFAULT);
+		long second = store.create(KalahaRules.of(4, 3));
+		long removed = store.create(KalahaRules.DEFAULT);
+		store.move(first, 2).join();
+		store.move(second, 1).join();
+		assertEquals(3, SessionCheckpoint.write(store, checkpoint));
+
+		// Journal after the checkpoint
+		store.move(first, 0).join();
+		store.move(second, 3).join();
+		store.remove(removed);
+		long third = store.create(KalahaRules.DEFAULT);
+		store.move(third, 5).join();
+		store.getJournal().close();
+
+		GameSessionStore recovered = new GameSessionStore(2, 1, Long.MAX_VALUE, 60000, false, Runnable::run);
+		recovered.setJournal(MoveJournal.open(directory));
+		assertEquals(3, SessionCheckpoint.recover(recovered, checkpoint, 60000));
+		for (long id : new long[] { first, second, third }) {
+			assertEquals(store.getSnapshot(id).getBoardState(), recovered.getSnapshot(id).getBoardState());
+			assertEquals(store.getSnapshot(id).getMoveNumber(), recovered.getSnapshot(id).getMoveNumber());
+		}
+		assertNull(recovered.getSnapshot(removed));
+
+		// Recovered games go on journaling, new ids do not collide
+		assertEquals(KalahaGame.newGame("A", "B").makeMove(2).makeMove(0).makeMove(4).getBoardState(),
+				recovered.move(first, 4).join().getBoardState());
+		assertEquals(third + 1, recovered.create(KalahaRules.DEFAULT));
+		recovered.getJournal().close();
+	}
+
+	@Test
+	public void testRecoveryDropsGameWithMissingMoves() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		try (MoveJournal journal = MoveJournal.open(directory)) {
+			KalahaBoard good = new KalahaBoard(KalahaRules.DEFAULT);
+			journal.append(1, good.getHash(), 0, MoveJournal.createWord(KalahaRules.DEFAULT));
+			journal.append(2, good.getHash(), 0, MoveJournal.createWord(KalahaRules.DEFAULT));
+			good.makeMove(2);
+			journal.append(1, good.getHash(), 1, MoveJournal.moveWord(2));
+			// Move 1 of game 2 is missing
+			journal.append(2, 0, 2, MoveJournal.moveWord(0));
+		}
+		GameSessionStore recovered = new GameSessionStore(1, 10, Long.MAX_VALUE, 60000, false, Runnable::run);
+		try (MoveJournal journal = MoveJournal.open(directory)) {
+			recovered.setJournal(journal);
+			assertEquals(1, SessionCheckpoint.recover(recovered, directory.resolve("sessions.checkpoint"), 60000));
+			assertEquals(1, recovered.getSnapshot(1).getMoveNumber());
+			assertNull(recovered.getSnapshot(2));
+			assertEquals(3, recovered.create(KalahaRules.DEFAULT));
+		}
+	}
+}